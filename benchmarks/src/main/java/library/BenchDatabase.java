@@ -0,0 +1,39 @@
+package library;
+
+import java.util.Locale;
+
+// Выбор базы данных для бенчмарков и нагрузочного теста.
+// Они очищают таблицу book или заполняют ее тестовыми книгами, поэтому адрес базы нужно задать явно,
+// а рабочая база программы (library) не принимается совсем.
+final class BenchDatabase {
+    // База программы, с которой тесты не работают
+    private static final String LIBRARY_DATABASE = "library";
+
+    private BenchDatabase() {
+    }
+
+    // Метод для получения адреса базы из системного свойства property;
+    // example - адрес отдельной базы, который предлагается в сообщении об ошибке
+    static String requireUrl(String property, String example) {
+        String url = System.getProperty(property);
+        if (url == null || url.isBlank()) {
+            throw new IllegalStateException("Не задан адрес базы данных: укажите отдельную базу, например -D"
+                    + property + "=" + example + " (тест изменяет таблицу book)");
+        }
+        if (databaseName(url).equals(LIBRARY_DATABASE)) {
+            throw new IllegalStateException("База " + url + " - рабочая база программы; укажите в -D"
+                    + property + " отдельную базу, например " + example);
+        }
+        return url;
+    }
+
+    // Имя базы из адреса вида jdbc:postgresql://host:port/имя?параметры (без учета регистра, как в PostgreSQL)
+    private static String databaseName(String url) {
+        String path = url;
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        return path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,201 @@
+package library;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Бенчмарки операций с каталогом книг (BookRepository) на наборах из 1 тыс., 100 тыс. и 1 млн книг.
+// Режимы: пропускная способность (Throughput) и распределение задержек с перцентилями (SampleTime);
+// выделение памяти показывает профилировщик -prof gc (в main() он подключается автоматически).
+//
+// backend=memory   - InMemoryBookRepository, не требует базы данных (по умолчанию);
+// backend=postgres - JdbcBookRepository на локальном PostgreSQL со схемой из migrations и samples.sql
+//                    (запуск с -p backend=memory,postgres).
+//                    Параметры подключения: -Dbench.url (обязателен), -Dbench.user, -Dbench.password (по умолчанию postgres).
+//                    Таблица book в этой базе очищается, поэтому нужна отдельная база, например library_bench
+//                    со схемой из migrations и samples.sql; рабочая база library не принимается.
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookRepositoryBenchmark {
+    // Названия книг, которые добавляются и удаляются во время бенчмарков
+    private static final String ADDED_TITLE = "bench-added";
+    private static final String DELETED_TITLE = "bench-deleted";
+
+    // Число разных авторов и лет в наборе данных
+    private static final int AUTHORS = 1000;
+    private static final int YEARS = 120;
+
+    @State(Scope.Benchmark)
+    public static class Catalog {
+        @Param({"1000", "100000", "1000000"})
+        public int rows;
+
+        @Param({"memory"})
+        public String backend;
+
+        BookRepository repository;
+        ConnectionPool pool;
+        // id первой книги набора (в PostgreSQL последовательность id не сбрасывается при очистке)
+        int firstId;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            if (backend.equals("postgres")) {
+                pool = new ConnectionPool("bench",
+                        BenchDatabase.requireUrl("bench.url", "jdbc:postgresql://localhost:5432/library_bench"),
+                        System.getProperty("bench.user", "postgres"),
+                        System.getProperty("bench.password", ""),
+                        new ConnectionPool.Settings(1, 8, 30000, 60000, 2, 32));
+                repository = new JdbcBookRepository(pool::getConnection, "bench", null);
+                repository.clear();
+                loadWithCopy();
+            } else {
+                repository = new InMemoryBookRepository();
+                for (int i = 0; i < rows; i++) {
+                    repository.addBook(title(i), author(i), year(i));
+                }
+            }
+            firstId = (Integer) repository.viewPage(0, 1).get(0)[0];
+        }
+
+        @TearDown(Level.Iteration)
+        public void removeAdded() throws SQLException {
+            repository.deleteByTitle(ADDED_TITLE);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            if (pool != null) {
+                pool.close();
+            }
+        }
+
+        int randomIndex() {
+            return ThreadLocalRandom.current().nextInt(rows);
+        }
+
+        // Загрузка набора данных через COPY (так же, как импорт книг в приложении)
+        private void loadWithCopy() throws Exception {
+            Path file = Files.createTempFile("bench-books", ".csv");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                    for (int i = 0; i < rows; i++) {
+                        writer.write(title(i) + "," + author(i) + "," + year(i));
+                        writer.newLine();
+                    }
+                }
+                try (java.sql.Connection conn = pool.getConnection()) {
+                    BookImporter.Result result = new BookImporter(50000, true).importFile(conn, file,
+                            new DatabaseExecutor.OperationContext(0), (read, loaded, rejected, rowsPerSecond) -> { });
+                    if (result.loaded != rows) {
+                        throw new IllegalStateException("Загружено " + result.loaded + " книг из " + rows);
+                    }
+                }
+                try (java.sql.Connection conn = pool.getConnection();
+                     java.sql.Statement stmt = conn.createStatement()) {
+                    stmt.execute("ANALYZE book");
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Книга, которую удаляет бенчмарк deleteByTitle; добавляется перед каждым вызовом
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+        @Setup(Level.Invocation)
+        public void insert(Catalog catalog) throws SQLException {
+            catalog.repository.addBook(DELETED_TITLE, "Bench Author", 2000);
+        }
+    }
+
+    @Benchmark
+    public void addBook(Catalog catalog) throws SQLException {
+        catalog.repository.addBook(ADDED_TITLE, "Bench Author", 2024);
+    }
+
+    @Benchmark
+    public List<Object[]> findByTitle(Catalog catalog) throws SQLException {
+        return catalog.repository.findByTitle(title(catalog.randomIndex()));
+    }
+
+    @Benchmark
+    public List<Object[]> findByAuthor(Catalog catalog) throws SQLException {
+        return catalog.repository.findByAuthor(author(catalog.randomIndex()));
+    }
+
+    @Benchmark
+    public List<Object[]> findByYear(Catalog catalog) throws SQLException {
+        return catalog.repository.findByYear(year(catalog.randomIndex()));
+    }
+
+    @Benchmark
+    public List<Object[]> findBooks(Catalog catalog) throws SQLException {
+        int i = catalog.randomIndex();
+        return catalog.repository.findBooks(null, author(i), year(i), "title", 100);
+    }
+
+    @Benchmark
+    public void updateBook(Catalog catalog) throws SQLException {
+        int i = catalog.randomIndex();
+        catalog.repository.updateBook(catalog.firstId + i, title(i), author(i), year(i));
+    }
+
+    @Benchmark
+    public void deleteByTitle(Catalog catalog, DeleteTarget target) throws SQLException {
+        catalog.repository.deleteByTitle(DELETED_TITLE);
+    }
+
+    @Benchmark
+    public long viewAll(Catalog catalog, Blackhole blackhole) throws SQLException {
+        return catalog.repository.viewAll(blackhole::consume);
+    }
+
+    private static String title(int i) {
+        return "Title " + i;
+    }
+
+    private static String author(int i) {
+        return "Author " + (i % AUTHORS);
+    }
+
+    private static int year(int i) {
+        return 1900 + i % YEARS;
+    }
+
+    // Запуск всех бенчмарков из IDE с профилировщиком выделения памяти
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BookRepositoryBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
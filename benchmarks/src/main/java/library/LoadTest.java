@@ -0,0 +1,410 @@
+package library;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Нагрузочный тест: много одновременных клиентов разных ролей работают с одной базой PostgreSQL
+// теми же операциями, что и кнопки программы (Add Record, Search Record, Update Record, Delete Record, View All).
+// Каждый клиент - виртуальный поток со своей паузой "на обдумывание"; соединения берутся из пулов ролей.
+// Каждые load.reportSeconds выводятся пропускная способность, доля ошибок, ожидания блокировок
+// и перцентили задержек за интервал, в конце - итог за весь прогон.
+//
+// Тест работает только с отдельной базой (например, library_load со схемой из migrations и samples.sql):
+// адрес задается явно, рабочая база library не принимается. Тест меняет только свои книги - загруженные
+// при подготовке (название "Load seed <номер>") и добавленные клиентами ("Load added ..."); добавленные книги,
+// которые клиенты не успели удалить, удаляются в конце прогона, загруженные остаются для следующих прогонов.
+//
+// Запуск (после mvn package в каталоге benchmarks):
+//   java -Dload.url=jdbc:postgresql://localhost:5432/library_load -Dload.guests=200 -Dload.moderators=50 \
+//        -cp target/benchmarks.jar library.LoadTest
+//
+// Параметры (-D):
+//   load.url                           - адрес отдельной базы для теста (обязателен)
+//   load.user, load.password           - подключение для подготовки данных и наблюдения за блокировками (postgres)
+//   load.<роль>.password               - пароль роли admin, moderator или guest (по умолчанию <роль>_password)
+//   load.admins, load.moderators, load.guests - число клиентов каждой роли (0, 50, 200)
+//   load.writeRatio                    - доля изменяющих операций у администраторов и модераторов (0.3)
+//   load.thinkMillis                   - средняя пауза клиента между операциями (200)
+//   load.rows                          - минимальный размер набора данных, недостающие книги загружаются через COPY (100000)
+//   load.durationSeconds, load.reportSeconds - длительность прогона и интервал отчета (60, 5)
+//   load.poolSize                      - максимальный размер пула соединений каждой роли (16)
+//   load.csv                           - файл для записи отчетов по интервалам в формате CSV (не задан)
+public class LoadTest {
+    private static final String[] OPERATIONS = {"add", "search", "update", "delete", "view"};
+    // Число разных авторов и лет в наборе данных (как в BookRepositoryBenchmark)
+    private static final int AUTHORS = 1000;
+    private static final int YEARS = 120;
+    // Размер страницы при просмотре (как в окне View All)
+    private static final int VIEW_PAGE_SIZE = 200;
+    private static final int SEARCH_LIMIT = 100;
+    // Начало названий книг теста: загруженных при подготовке и добавленных клиентами
+    private static final String SEED_PREFIX = "Load seed ";
+    private static final String ADDED_PREFIX = "Load added ";
+    // Коды SQLSTATE, связанные с блокировками: взаимоблокировка, блокировка недоступна, конфликт сериализации
+    private static final List<String> LOCK_STATES = List.of("40P01", "55P03", "40001");
+
+    private final String url = BenchDatabase.requireUrl("load.url", "jdbc:postgresql://localhost:5432/library_load");
+    private final String user = System.getProperty("load.user", "postgres");
+    private final String password = System.getProperty("load.password", "");
+    private final double writeRatio = Double.parseDouble(System.getProperty("load.writeRatio", "0.3"));
+    private final long thinkMillis = Long.parseLong(System.getProperty("load.thinkMillis", "200"));
+    private final int rows = Integer.parseInt(System.getProperty("load.rows", "100000"));
+    private final long durationSeconds = Long.parseLong(System.getProperty("load.durationSeconds", "60"));
+    private final long reportSeconds = Long.parseLong(System.getProperty("load.reportSeconds", "5"));
+    private final int poolSize = Integer.parseInt(System.getProperty("load.poolSize", "16"));
+    private final String csv = System.getProperty("load.csv");
+
+    // Статистика операций: за весь прогон и за текущий интервал
+    private final Map<String, OperationStats> stats = new LinkedHashMap<>();
+    // Наблюдение за блокировками: сумма и максимум числа ожидающих сеансов по замерам интервала
+    private final AtomicLong lockWaitSamples = new AtomicLong();
+    private final AtomicLong lockWaitSum = new AtomicLong();
+    private final AtomicLong lockWaitMax = new AtomicLong();
+    private final AtomicLong totalLockWaitSamples = new AtomicLong();
+    private final AtomicLong totalLockWaitSum = new AtomicLong();
+    private final AtomicLong totalLockWaitMax = new AtomicLong();
+
+    // id книг, загруженных при подготовке: только их клиенты изменяют и просматривают
+    private int[] seededIds;
+    private volatile boolean running = true;
+
+    // Статистика одной операции
+    private static class OperationStats {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        final LongAdder lockErrors = new LongAdder();
+        // Значения на начало текущего интервала
+        LatencyHistogram.Snapshot previous = LatencyHistogram.Snapshot.empty();
+        long previousErrors;
+        long previousLockErrors;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+    }
+
+    private void run() throws Exception {
+        for (String operation : OPERATIONS) {
+            stats.put(operation, new OperationStats());
+        }
+
+        try (Connection conn = DriverManager.getConnection(url, user, password)) {
+            prepareData(conn);
+        }
+
+        Map<String, Integer> clients = new LinkedHashMap<>();
+        clients.put("admin", Integer.getInteger("load.admins", 0));
+        clients.put("moderator", Integer.getInteger("load.moderators", 50));
+        clients.put("guest", Integer.getInteger("load.guests", 200));
+        System.out.printf(Locale.ROOT, "Clients: %s, write ratio %.2f, think time %d ms, %d s%n",
+                clients, writeRatio, thinkMillis, durationSeconds);
+
+        List<ConnectionPool> pools = new ArrayList<>();
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        Thread monitor = Thread.ofPlatform().daemon().name("lock-monitor").start(this::monitorLocks);
+        long start = System.nanoTime();
+        try (BufferedWriter csvWriter = csv != null ? Files.newBufferedWriter(Paths.get(csv), StandardCharsets.UTF_8) : null) {
+            if (csvWriter != null) {
+                csvWriter.write("seconds,operation,count,errors,lock_errors,p50_ms,p95_ms,p99_ms,max_ms,lock_waits_avg,lock_waits_max\n");
+            }
+            for (Map.Entry<String, Integer> entry : clients.entrySet()) {
+                String role = entry.getKey();
+                if (entry.getValue() == 0) {
+                    continue;
+                }
+                ConnectionPool pool = new ConnectionPool(role, url, role,
+                        System.getProperty("load." + role + ".password", role + "_password"),
+                        new ConnectionPool.Settings(1, poolSize, 60000, 60000, 2, 32));
+                pools.add(pool);
+                BookRepository repository = new JdbcBookRepository(pool::getConnection, role, null);
+                boolean writer = !role.equals("guest");
+                for (int i = 0; i < entry.getValue(); i++) {
+                    executor.execute(() -> client(repository, writer));
+                }
+            }
+
+            long deadline = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(Math.min(TimeUnit.SECONDS.toMillis(reportSeconds),
+                        Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))));
+                report((System.nanoTime() - start) / 1e9, csvWriter);
+            }
+        } finally {
+            running = false;
+            executor.shutdown();
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+            monitor.interrupt();
+            for (ConnectionPool pool : pools) {
+                System.out.println(pool.getStats());
+                pool.close();
+            }
+            try (Connection conn = DriverManager.getConnection(url, user, password)) {
+                removeAddedBooks(conn);
+            }
+        }
+        summary((System.nanoTime() - start) / 1e9);
+    }
+
+    // Подготовка набора данных: недостающие до load.rows книги теста загружаются через COPY.
+    // Остатки прерванного прогона удаляются до начала, чтобы не искажать размер набора.
+    private void prepareData(Connection conn) throws Exception {
+        removeAddedBooks(conn);
+        int count;
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT count(*) FROM book WHERE title LIKE ?")) {
+            stmt.setString(1, SEED_PREFIX + "%");
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                count = rs.getInt(1);
+            }
+        }
+        if (count < rows) {
+            System.out.printf("Loading %d books...%n", rows - count);
+            Path file = Files.createTempFile("load-books", ".csv");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                    for (int i = count; i < rows; i++) {
+                        writer.write(title(i) + "," + author(i) + "," + year(i));
+                        writer.newLine();
+                    }
+                }
+                new BookImporter(50000, true).importFile(conn, file, new DatabaseExecutor.OperationContext(0),
+                        (read, loaded, rejected, rowsPerSecond) -> { });
+            } finally {
+                Files.deleteIfExists(file);
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE book");
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT id FROM book WHERE title LIKE ? ORDER BY id")) {
+            stmt.setString(1, SEED_PREFIX + "%");
+            try (ResultSet rs = stmt.executeQuery()) {
+                int[] ids = new int[Math.max(count, rows)];
+                int n = 0;
+                while (rs.next()) {
+                    if (n == ids.length) {
+                        ids = Arrays.copyOf(ids, n * 2);
+                    }
+                    ids[n++] = rs.getInt(1);
+                }
+                if (n == 0) {
+                    throw new IllegalStateException("В базе нет книг теста");
+                }
+                seededIds = Arrays.copyOf(ids, n);
+            }
+        }
+    }
+
+    // Удаление книг, добавленных клиентами и не удаленных ими
+    private void removeAddedBooks(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM book WHERE title LIKE ?")) {
+            stmt.setString(1, ADDED_PREFIX + "%");
+            int removed = stmt.executeUpdate();
+            if (removed > 0) {
+                System.out.printf("Removed %d books added by load clients%n", removed);
+            }
+        }
+    }
+
+    // Цикл одного клиента
+    private void client(BookRepository repository, boolean writer) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Книги, добавленные этим клиентом: их же клиент и удаляет, чтобы размер набора не менялся
+        Deque<String> added = new ArrayDeque<>();
+        while (running) {
+            try {
+                Thread.sleep((long) (-Math.log(1 - random.nextDouble()) * thinkMillis));
+            } catch (InterruptedException ex) {
+                return;
+            }
+            if (!running) {
+                return;
+            }
+
+            String operation;
+            if (writer && random.nextDouble() < writeRatio) {
+                double r = random.nextDouble();
+                operation = r < 0.4 ? "add" : r < 0.8 || added.isEmpty() ? "update" : "delete";
+            } else {
+                operation = random.nextDouble() < 0.9 ? "search" : "view";
+            }
+
+            OperationStats operationStats = stats.get(operation);
+            long start = System.nanoTime();
+            try {
+                execute(repository, operation, added, random);
+                operationStats.histogram.record(System.nanoTime() - start);
+            } catch (SQLException ex) {
+                operationStats.histogram.record(System.nanoTime() - start);
+                operationStats.errors.increment();
+                if (LOCK_STATES.contains(ex.getSQLState())) {
+                    operationStats.lockErrors.increment();
+                }
+            }
+        }
+    }
+
+    // Выполнение операции так же, как это делает соответствующая кнопка программы
+    private void execute(BookRepository repository, String operation, Deque<String> added,
+                         ThreadLocalRandom random) throws SQLException {
+        int i = random.nextInt(rows);
+        switch (operation) {
+            case "add":
+                String title = ADDED_PREFIX + Thread.currentThread().threadId() + "-" + random.nextLong();
+                repository.addBook(title, author(i), year(i));
+                added.add(title);
+                break;
+            case "search":
+                // Поиск по одному или нескольким полям, как в окне Search Record
+                double r = random.nextDouble();
+                if (r < 0.3) {
+                    repository.findBooks(title(i), null, null, "id", SEARCH_LIMIT);
+                } else if (r < 0.7) {
+                    repository.findBooks(null, author(i), null, "title", SEARCH_LIMIT);
+                } else if (r < 0.9) {
+                    repository.findBooks(null, author(i), year(i), "title", SEARCH_LIMIT);
+                } else {
+                    repository.findBooks(null, null, year(i), "id", SEARCH_LIMIT);
+                }
+                break;
+            case "update":
+                // Изменяются только книги теста, и название остается с префиксом теста
+                int id = seededIds[random.nextInt(seededIds.length)];
+                repository.updateBook(id, title(i), author(i), year(i));
+                break;
+            case "delete":
+                repository.deleteByTitle(added.poll());
+                break;
+            case "view":
+                // Страница таблицы View All в случайном месте прокрутки
+                repository.viewPage(seededIds[random.nextInt(seededIds.length)] - 1, VIEW_PAGE_SIZE);
+                break;
+            default:
+                throw new IllegalArgumentException(operation);
+        }
+    }
+
+    // Замер числа сеансов базы, ожидающих блокировку (четыре раза в секунду)
+    private void monitorLocks() {
+        try (Connection conn = DriverManager.getConnection(url, user, password);
+             Statement stmt = conn.createStatement()) {
+            while (!Thread.currentThread().isInterrupted()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT count(*) FROM pg_stat_activity "
+                        + "WHERE datname = current_database() AND wait_event_type = 'Lock'")) {
+                    rs.next();
+                    long waiting = rs.getLong(1);
+                    lockWaitSamples.incrementAndGet();
+                    lockWaitSum.addAndGet(waiting);
+                    lockWaitMax.accumulateAndGet(waiting, Math::max);
+                    totalLockWaitSamples.incrementAndGet();
+                    totalLockWaitSum.addAndGet(waiting);
+                    totalLockWaitMax.accumulateAndGet(waiting, Math::max);
+                }
+                Thread.sleep(250);
+            }
+        } catch (SQLException ex) {
+            System.err.println("Lock monitor stopped: " + ex.getMessage());
+        } catch (InterruptedException ex) {
+            // Прогон завершен
+        }
+    }
+
+    // Отчет за интервал
+    private void report(double seconds, BufferedWriter csvWriter) throws IOException {
+        long samples = lockWaitSamples.getAndSet(0);
+        double lockAvg = samples > 0 ? (double) lockWaitSum.getAndSet(0) / samples : 0;
+        long lockMax = lockWaitMax.getAndSet(0);
+
+        long totalOps = 0;
+        long totalErrors = 0;
+        StringBuilder lines = new StringBuilder();
+        for (Map.Entry<String, OperationStats> entry : stats.entrySet()) {
+            OperationStats s = entry.getValue();
+            LatencyHistogram.Snapshot total = s.histogram.snapshot();
+            LatencyHistogram.Snapshot interval = total.minus(s.previous);
+            long errors = s.errors.sum();
+            long lockErrors = s.lockErrors.sum();
+            long intervalErrors = errors - s.previousErrors;
+            long intervalLockErrors = lockErrors - s.previousLockErrors;
+            s.previous = total;
+            s.previousErrors = errors;
+            s.previousLockErrors = lockErrors;
+
+            totalOps += interval.count;
+            totalErrors += intervalErrors;
+            if (interval.count > 0) {
+                lines.append(line(entry.getKey(), interval, intervalErrors, intervalLockErrors, reportSeconds));
+            }
+            if (csvWriter != null) {
+                csvWriter.write(String.format(Locale.ROOT, "%.1f,%s,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.2f,%d%n",
+                        seconds, entry.getKey(), interval.count, intervalErrors, intervalLockErrors,
+                        interval.percentile(50) / 1e6, interval.percentile(95) / 1e6, interval.percentile(99) / 1e6,
+                        interval.maxNanos / 1e6, lockAvg, lockMax));
+            }
+        }
+        if (csvWriter != null) {
+            csvWriter.flush();
+        }
+        System.out.printf(Locale.ROOT, "[%6.1f s] %9.1f ops/s, errors %5.2f%%, sessions waiting on locks: avg %.2f, max %d%n%s",
+                seconds, totalOps / (double) reportSeconds, totalOps > 0 ? totalErrors * 100.0 / totalOps : 0,
+                lockAvg, lockMax, lines);
+    }
+
+    // Итог за весь прогон
+    private void summary(double seconds) {
+        long samples = totalLockWaitSamples.get();
+        System.out.printf(Locale.ROOT, "%nTotal for %.1f s (sessions waiting on locks: avg %.2f, max %d):%n",
+                seconds, samples > 0 ? (double) totalLockWaitSum.get() / samples : 0, totalLockWaitMax.get());
+        for (Map.Entry<String, OperationStats> entry : stats.entrySet()) {
+            OperationStats s = entry.getValue();
+            LatencyHistogram.Snapshot total = s.histogram.snapshot();
+            if (total.count > 0) {
+                System.out.print(line(entry.getKey(), total, s.errors.sum(), s.lockErrors.sum(), seconds));
+            }
+        }
+    }
+
+    private static String line(String operation, LatencyHistogram.Snapshot snapshot, long errors, long lockErrors, double seconds) {
+        return String.format(Locale.ROOT,
+                "  %-7s %9.1f ops/s  n=%-8d errors=%-5d lock errors=%-5d p50=%8.2f ms  p95=%8.2f ms  p99=%8.2f ms  max=%8.2f ms%n",
+                operation, snapshot.count / seconds, snapshot.count, errors, lockErrors,
+                snapshot.percentile(50) / 1e6, snapshot.percentile(95) / 1e6, snapshot.percentile(99) / 1e6,
+                snapshot.maxNanos / 1e6);
+    }
+
+    private static String title(int i) {
+        return SEED_PREFIX + i;
+    }
+
+    private static String author(int i) {
+        return "Author " + (i % AUTHORS);
+    }
+
+    private static int year(int i) {
+        return 1900 + i % YEARS;
+    }
+}
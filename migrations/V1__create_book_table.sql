@@ -0,0 +1,7 @@
+-- Создание таблицы book
+CREATE TABLE IF NOT EXISTS book (
+    id SERIAL PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    author VARCHAR(255) NOT NULL,
+    year INT NOT NULL
+);
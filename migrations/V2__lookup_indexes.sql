@@ -0,0 +1,13 @@
+-- migration: no-transaction
+-- Индексы для точного поиска (FindBookByTitle, FindBookByAuthor, FindBookByYear) и удаления по названию (DeleteBookByTitle).
+-- Индексы строятся без блокировки записи в таблицу (CONCURRENTLY), поэтому миграция выполняется вне транзакции.
+-- Если предыдущая попытка прервалась, недостроенный индекс удаляется и строится заново.
+
+DROP INDEX CONCURRENTLY IF EXISTS book_title_idx;
+CREATE INDEX CONCURRENTLY book_title_idx ON book (title);
+
+DROP INDEX CONCURRENTLY IF EXISTS book_author_idx;
+CREATE INDEX CONCURRENTLY book_author_idx ON book (author);
+
+DROP INDEX CONCURRENTLY IF EXISTS book_year_idx;
+CREATE INDEX CONCURRENTLY book_year_idx ON book (year);
@@ -0,0 +1,23 @@
+-- migration: no-transaction
+-- Индексы для ранжированного поиска SearchBooks (строятся без блокировки записи в таблицу).
+
+-- Расширение для нечеткого поиска по триграммам
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Индексы для поиска по началу строки (LIKE 'префикс%' без учета регистра)
+DROP INDEX CONCURRENTLY IF EXISTS book_title_prefix_idx;
+CREATE INDEX CONCURRENTLY book_title_prefix_idx ON book (lower(title) text_pattern_ops);
+
+DROP INDEX CONCURRENTLY IF EXISTS book_author_prefix_idx;
+CREATE INDEX CONCURRENTLY book_author_prefix_idx ON book (lower(author) text_pattern_ops);
+
+-- Триграммные индексы для нечеткого поиска (опечатки, поиск по подстроке)
+DROP INDEX CONCURRENTLY IF EXISTS book_title_trgm_idx;
+CREATE INDEX CONCURRENTLY book_title_trgm_idx ON book USING GIN (title gin_trgm_ops);
+
+DROP INDEX CONCURRENTLY IF EXISTS book_author_trgm_idx;
+CREATE INDEX CONCURRENTLY book_author_trgm_idx ON book USING GIN (author gin_trgm_ops);
+
+-- Полнотекстовый индекс по названию и автору
+DROP INDEX CONCURRENTLY IF EXISTS book_fts_idx;
+CREATE INDEX CONCURRENTLY book_fts_idx ON book USING GIN (to_tsvector('simple', title || ' ' || author));
@@ -0,0 +1,126 @@
+-- Агрегаты каталога для статистики (CatalogSummary, BooksPerAuthor, BooksPerYear).
+-- Число книг каждого автора и каждого года издания хранится в отдельных таблицах и поддерживается триггерами
+-- на таблице book, поэтому статистика читается одним дешевым запросом, без передачи всех книг клиенту.
+-- Триггеры уровня команды с таблицами переходов обрабатывают пакетные изменения (COPY, UpdateBooks,
+-- DeleteBooksByIds, ClearTable) одним изменением агрегатов на команду, а не на каждую строку.
+
+CREATE TABLE IF NOT EXISTS book_author_stats (
+    author VARCHAR(255) PRIMARY KEY,
+    books BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS book_year_stats (
+    year INT PRIMARY KEY,
+    books BIGINT NOT NULL
+);
+
+-- Применение изменений счетчиков. Строки упорядочены по ключу, чтобы параллельные транзакции
+-- блокировали строки агрегатов в одном порядке и не попадали во взаимоблокировку;
+-- строки с нулевым числом книг удаляются, чтобы число авторов и лет оставалось точным.
+CREATE OR REPLACE FUNCTION book_stats_apply(p_authors VARCHAR(255)[], p_author_books BIGINT[],
+                                            p_years INT[], p_year_books BIGINT[])
+RETURNS VOID
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+BEGIN
+IF p_authors IS NOT NULL THEN
+    INSERT INTO book_author_stats AS s (author, books)
+    SELECT d.author, d.books FROM unnest(p_authors, p_author_books) AS d(author, books) ORDER BY d.author
+    ON CONFLICT (author) DO UPDATE SET books = s.books + EXCLUDED.books;
+    DELETE FROM book_author_stats s WHERE s.author = ANY(p_authors) AND s.books <= 0;
+END IF;
+IF p_years IS NOT NULL THEN
+    INSERT INTO book_year_stats AS s (year, books)
+    SELECT d.year, d.books FROM unnest(p_years, p_year_books) AS d(year, books) ORDER BY d.year
+    ON CONFLICT (year) DO UPDATE SET books = s.books + EXCLUDED.books;
+    DELETE FROM book_year_stats s WHERE s.year = ANY(p_years) AND s.books <= 0;
+END IF;
+END;
+$$;
+
+-- Триггерная функция: изменения счетчиков по добавленным (new_rows) и удаленным (old_rows) строкам.
+-- При обновлении учитываются только авторы и годы, у которых число книг действительно изменилось,
+-- поэтому изменение одного названия агрегаты не блокирует.
+CREATE OR REPLACE FUNCTION book_stats_trigger()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+DECLARE
+    v_authors VARCHAR(255)[];
+    v_author_books BIGINT[];
+    v_years INT[];
+    v_year_books BIGINT[];
+BEGIN
+IF TG_OP = 'INSERT' THEN
+    SELECT array_agg(d.author), array_agg(d.books) INTO v_authors, v_author_books
+    FROM (SELECT n.author, count(*) AS books FROM new_rows n GROUP BY n.author) d;
+    SELECT array_agg(d.year), array_agg(d.books) INTO v_years, v_year_books
+    FROM (SELECT n.year, count(*) AS books FROM new_rows n GROUP BY n.year) d;
+ELSIF TG_OP = 'DELETE' THEN
+    SELECT array_agg(d.author), array_agg(d.books) INTO v_authors, v_author_books
+    FROM (SELECT o.author, -count(*) AS books FROM old_rows o GROUP BY o.author) d;
+    SELECT array_agg(d.year), array_agg(d.books) INTO v_years, v_year_books
+    FROM (SELECT o.year, -count(*) AS books FROM old_rows o GROUP BY o.year) d;
+ELSE
+    SELECT array_agg(d.author), array_agg(d.books) INTO v_authors, v_author_books
+    FROM (SELECT c.author, sum(c.delta)::BIGINT AS books
+          FROM (SELECT n.author, 1 AS delta FROM new_rows n
+                UNION ALL
+                SELECT o.author, -1 FROM old_rows o) c
+          GROUP BY c.author HAVING sum(c.delta) <> 0) d;
+    SELECT array_agg(d.year), array_agg(d.books) INTO v_years, v_year_books
+    FROM (SELECT c.year, sum(c.delta)::BIGINT AS books
+          FROM (SELECT n.year, 1 AS delta FROM new_rows n
+                UNION ALL
+                SELECT o.year, -1 FROM old_rows o) c
+          GROUP BY c.year HAVING sum(c.delta) <> 0) d;
+END IF;
+PERFORM book_stats_apply(v_authors, v_author_books, v_years, v_year_books);
+RETURN NULL;
+END;
+$$;
+
+-- Очистка агрегатов при TRUNCATE таблицы book
+CREATE OR REPLACE FUNCTION book_stats_truncate()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+BEGIN
+TRUNCATE book_author_stats, book_year_stats;
+RETURN NULL;
+END;
+$$;
+
+-- Пока создаются триггеры и заполняются агрегаты, изменения таблицы book ждут,
+-- иначе книги, добавленные в это время, не попали бы в статистику
+LOCK TABLE book IN SHARE ROW EXCLUSIVE MODE;
+
+DROP TRIGGER IF EXISTS book_stats_insert ON book;
+CREATE TRIGGER book_stats_insert AFTER INSERT ON book
+    REFERENCING NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION book_stats_trigger();
+
+DROP TRIGGER IF EXISTS book_stats_update ON book;
+CREATE TRIGGER book_stats_update AFTER UPDATE ON book
+    REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION book_stats_trigger();
+
+DROP TRIGGER IF EXISTS book_stats_delete ON book;
+CREATE TRIGGER book_stats_delete AFTER DELETE ON book
+    REFERENCING OLD TABLE AS old_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION book_stats_trigger();
+
+DROP TRIGGER IF EXISTS book_stats_truncate ON book;
+CREATE TRIGGER book_stats_truncate AFTER TRUNCATE ON book
+    FOR EACH STATEMENT EXECUTE FUNCTION book_stats_truncate();
+
+-- Начальное заполнение агрегатов по уже существующим книгам
+TRUNCATE book_author_stats, book_year_stats;
+INSERT INTO book_author_stats (author, books) SELECT author, count(*) FROM book GROUP BY author;
+INSERT INTO book_year_stats (year, books) SELECT year, count(*) FROM book GROUP BY year;
@@ -0,0 +1,13 @@
+-- migration: no-transaction
+-- Триграммные индексы GiST вместо GIN: кроме отбора по сходству (%) они умеют отдавать строки
+-- в порядке близости к запросу (ORDER BY ... <-> запрос), поэтому нечеткий поиск SearchBooks
+-- читает из индекса сразу лучшие совпадения, а не произвольные кандидаты.
+
+DROP INDEX CONCURRENTLY IF EXISTS book_title_trgm_gist_idx;
+CREATE INDEX CONCURRENTLY book_title_trgm_gist_idx ON book USING GIST (title gist_trgm_ops);
+
+DROP INDEX CONCURRENTLY IF EXISTS book_author_trgm_gist_idx;
+CREATE INDEX CONCURRENTLY book_author_trgm_gist_idx ON book USING GIST (author gist_trgm_ops);
+
+DROP INDEX CONCURRENTLY IF EXISTS book_title_trgm_idx;
+DROP INDEX CONCURRENTLY IF EXISTS book_author_trgm_idx;
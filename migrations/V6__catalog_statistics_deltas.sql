@@ -0,0 +1,128 @@
+-- Изменения агрегатов статистики записываются в журнал дельт, а не прямо в строки агрегатов.
+-- В V4 триггер каждой команды обновлял строки book_author_stats/book_year_stats и держал их блокировки
+-- до конца транзакции. Упорядочение ключей защищало от взаимоблокировки только внутри одной команды:
+-- транзакции из нескольких команд (пачка AddBook очереди записи, повторы импорта с точками сохранения)
+-- брали блокировки строк агрегатов в разном порядке и могли получить 40P01, а около 120 строк лет
+-- выстраивали всех пишущих в очередь друг за другом.
+-- Теперь триггер только добавляет строки в book_stats_delta (таблица без ключей, вставка не блокирует
+-- чужие строки), а в агрегаты дельты переносит свертка book_stats_fold. Ее одновременно выполняет
+-- не больше одной транзакции (рекомендательная блокировка, которую не ждут, а пропускают),
+-- поэтому пишущие не ждут друг друга. Чтение статистики суммирует агрегаты и еще не свернутые дельты
+-- (представления book_author_totals и book_year_totals), поэтому итоги точны в любой момент.
+
+-- Журнал дельт: строка с автором (year IS NULL) или с годом (author IS NULL) и изменением числа книг
+CREATE TABLE IF NOT EXISTS book_stats_delta (
+    author VARCHAR(255),
+    year INT,
+    books BIGINT NOT NULL
+);
+
+-- Счетчик команд, записавших дельты: каждая сотая из них сворачивает журнал
+CREATE SEQUENCE IF NOT EXISTS book_stats_fold_seq;
+
+-- Свертка журнала дельт в агрегаты. Если свертку уже выполняет другая транзакция или транзакция
+-- только для чтения, ничего не делает: дельты останутся в журнале и будут учтены при чтении.
+CREATE OR REPLACE FUNCTION book_stats_fold()
+RETURNS VOID
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+DECLARE
+    v_authors VARCHAR(255)[];
+    v_author_books BIGINT[];
+    v_years INT[];
+    v_year_books BIGINT[];
+BEGIN
+IF current_setting('transaction_read_only')::BOOLEAN
+        OR NOT pg_try_advisory_xact_lock(hashtext('book_stats_fold')) THEN
+    RETURN;
+END IF;
+WITH d AS (DELETE FROM book_stats_delta RETURNING author, year, books),
+     a AS (SELECT d.author, sum(d.books)::BIGINT AS books FROM d WHERE d.author IS NOT NULL
+           GROUP BY d.author HAVING sum(d.books) <> 0),
+     y AS (SELECT d.year, sum(d.books)::BIGINT AS books FROM d WHERE d.year IS NOT NULL
+           GROUP BY d.year HAVING sum(d.books) <> 0)
+SELECT (SELECT array_agg(a.author ORDER BY a.author) FROM a), (SELECT array_agg(a.books ORDER BY a.author) FROM a),
+       (SELECT array_agg(y.year ORDER BY y.year) FROM y), (SELECT array_agg(y.books ORDER BY y.year) FROM y)
+INTO v_authors, v_author_books, v_years, v_year_books;
+PERFORM book_stats_apply(v_authors, v_author_books, v_years, v_year_books);
+END;
+$$;
+
+-- Триггерная функция: дельты по добавленным (new_rows) и удаленным (old_rows) строкам добавляются в журнал.
+-- При обновлении записываются только авторы и годы, у которых число книг действительно изменилось.
+CREATE OR REPLACE FUNCTION book_stats_trigger()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+DECLARE
+    v_rows BIGINT;
+BEGIN
+IF TG_OP = 'INSERT' THEN
+    INSERT INTO book_stats_delta (author, year, books)
+    SELECT n.author, NULL::INT, count(*) FROM new_rows n GROUP BY n.author
+    UNION ALL
+    SELECT NULL::VARCHAR(255), n.year, count(*) FROM new_rows n GROUP BY n.year;
+ELSIF TG_OP = 'DELETE' THEN
+    INSERT INTO book_stats_delta (author, year, books)
+    SELECT o.author, NULL::INT, -count(*) FROM old_rows o GROUP BY o.author
+    UNION ALL
+    SELECT NULL::VARCHAR(255), o.year, -count(*) FROM old_rows o GROUP BY o.year;
+ELSE
+    INSERT INTO book_stats_delta (author, year, books)
+    SELECT c.author, NULL::INT, sum(c.delta)::BIGINT
+    FROM (SELECT n.author, 1 AS delta FROM new_rows n
+          UNION ALL
+          SELECT o.author, -1 FROM old_rows o) c
+    GROUP BY c.author HAVING sum(c.delta) <> 0
+    UNION ALL
+    SELECT NULL::VARCHAR(255), c.year, sum(c.delta)::BIGINT
+    FROM (SELECT n.year, 1 AS delta FROM new_rows n
+          UNION ALL
+          SELECT o.year, -1 FROM old_rows o) c
+    GROUP BY c.year HAVING sum(c.delta) <> 0;
+END IF;
+GET DIAGNOSTICS v_rows = ROW_COUNT;
+-- Журнал не должен расти бесконечно, даже если статистику никто не читает
+IF v_rows > 0 AND nextval('book_stats_fold_seq') % 100 = 0 THEN
+    PERFORM book_stats_fold();
+END IF;
+RETURN NULL;
+END;
+$$;
+
+-- Очистка агрегатов и журнала при TRUNCATE таблицы book
+CREATE OR REPLACE FUNCTION book_stats_truncate()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+SECURITY DEFINER
+SET search_path = public
+AS $$
+BEGIN
+TRUNCATE book_author_stats, book_year_stats, book_stats_delta;
+RETURN NULL;
+END;
+$$;
+
+-- Итоги для чтения: агрегаты плюс еще не свернутые дельты
+CREATE OR REPLACE VIEW book_author_totals AS
+SELECT u.author, sum(u.books)::BIGINT AS books
+FROM (SELECT s.author, s.books FROM book_author_stats s
+      UNION ALL
+      SELECT d.author, d.books FROM book_stats_delta d WHERE d.author IS NOT NULL) u
+GROUP BY u.author
+HAVING sum(u.books) > 0;
+
+CREATE OR REPLACE VIEW book_year_totals AS
+SELECT u.year, sum(u.books)::BIGINT AS books
+FROM (SELECT s.year, s.books FROM book_year_stats s
+      UNION ALL
+      SELECT d.year, d.books FROM book_stats_delta d WHERE d.year IS NOT NULL) u
+GROUP BY u.year
+HAVING sum(u.books) > 0;
+
+-- Изменять агрегаты в обход журнала может только владелец (через book_stats_fold)
+REVOKE EXECUTE ON FUNCTION book_stats_apply(VARCHAR(255)[], BIGINT[], INT[], BIGINT[]) FROM PUBLIC;
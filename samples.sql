@@ -1,10 +1,6 @@
--- Создание таблицы book
-CREATE TABLE IF NOT EXISTS book (
-    id SERIAL PRIMARY KEY,
-    title VARCHAR(255) NOT NULL,
-    author VARCHAR(255) NOT NULL,
-    year INT NOT NULL
-);
+-- Процедуры, функции, роли и права доступа.
+-- Таблицы и индексы создаются миграциями из каталога migrations; этот файл применяется после них
+-- и повторно выполняется при каждом своем изменении, поэтому все команды в нем должны быть идемпотентными.
 
 -- Очистка таблицы
 CREATE OR REPLACE PROCEDURE ClearTable()
@@ -24,6 +20,19 @@ INSERT INTO book (title, author, year) VALUES (p_title, p_author, p_year);
 END;
 $$;
 
+-- Добавление нескольких книг одной командой: элементы массивов с одинаковым номером описывают одну книгу,
+-- книги получают id в порядке элементов массивов
+CREATE OR REPLACE PROCEDURE AddBooks(p_titles VARCHAR(255)[], p_authors VARCHAR(255)[], p_years INT[])
+LANGUAGE plpgsql
+AS $$
+BEGIN
+INSERT INTO book (title, author, year)
+SELECT a.title, a.author, a.year
+FROM unnest(p_titles, p_authors, p_years) WITH ORDINALITY AS a(title, author, year, n)
+ORDER BY a.n;
+END;
+$$;
+
 -- Поиск книги по названию
 CREATE OR REPLACE FUNCTION FindBookByTitle(p_title VARCHAR(255))
 RETURNS TABLE(id INT, title VARCHAR(255), author VARCHAR(255), year INT)
@@ -54,6 +63,121 @@ RETURN QUERY SELECT * FROM book WHERE book.year = p_year;
 END;
 $$;
 
+-- Ранжированный поиск книг: совпадение по началу названия или автора, полнотекстовый и нечеткий поиск.
+-- Каждый способ выбирает лучших по своей оценке кандидатов (не более p_limit), затем кандидаты объединяются.
+CREATE OR REPLACE FUNCTION SearchBooks(p_query VARCHAR(255), p_limit INT)
+RETURNS TABLE(id INT, title VARCHAR(255), author VARCHAR(255), year INT, rank REAL)
+LANGUAGE plpgsql
+STABLE
+AS $$
+DECLARE
+    -- Поиск по началу строки задается диапазоном [v_low, v_high): в отличие от LIKE с параметром,
+    -- такое условие использует индекс text_pattern_ops и в общем (generic) плане.
+    -- Сортировка USING ~<~ совпадает с порядком этого индекса, поэтому строки читаются без сортировки.
+    v_low TEXT := lower(p_query);
+    v_high TEXT := lower(p_query) || chr(1114111);
+    v_tsquery TSQUERY := websearch_to_tsquery('simple', p_query);
+BEGIN
+RETURN QUERY
+SELECT b.id, b.title, b.author, b.year, c.rank
+FROM (
+    SELECT u.id, max(u.rank)::REAL AS rank
+    FROM (
+        -- Совпадение по началу названия - самый точный результат
+        (SELECT book.id, 3.0::REAL AS rank FROM book
+         WHERE lower(book.title) ~>=~ v_low AND lower(book.title) ~<~ v_high
+         ORDER BY lower(book.title) USING ~<~ LIMIT p_limit)
+        UNION ALL
+        -- Совпадение по началу имени автора
+        (SELECT book.id, 2.5::REAL FROM book
+         WHERE lower(book.author) ~>=~ v_low AND lower(book.author) ~<~ v_high
+         ORDER BY lower(book.author) USING ~<~ LIMIT p_limit)
+        UNION ALL
+        -- Полнотекстовый поиск по словам: лучшие по ts_rank среди всех совпадений
+        (SELECT book.id, (2.0 + ts_rank(to_tsvector('simple', book.title || ' ' || book.author), v_tsquery))::REAL FROM book
+         WHERE to_tsvector('simple', book.title || ' ' || book.author) @@ v_tsquery
+         ORDER BY 2 DESC LIMIT p_limit)
+        UNION ALL
+        -- Нечеткий поиск по триграммам (находит строки с опечатками): индекс GiST отдает строки
+        -- в порядке сходства с запросом (<->), поэтому берутся самые похожие, а не произвольные
+        (SELECT book.id, similarity(book.title, p_query)::REAL FROM book
+         WHERE book.title % p_query
+         ORDER BY book.title <-> p_query LIMIT p_limit)
+        UNION ALL
+        (SELECT book.id, similarity(book.author, p_query)::REAL FROM book
+         WHERE book.author % p_query
+         ORDER BY book.author <-> p_query LIMIT p_limit)
+    ) u
+    GROUP BY u.id
+    ORDER BY 2 DESC
+    LIMIT p_limit
+) c
+JOIN book b ON b.id = c.id
+ORDER BY c.rank DESC, b.title;
+END;
+$$;
+
+-- Комбинированный поиск книг: любые из фильтров по названию, автору и году (NULL - фильтр не задан),
+-- сортировка по id, title, author или year и ограничение числа строк.
+-- Для каждого сочетания фильтров написан отдельный статический запрос: его план кэшируется в сеансе
+-- и использует индекс по заданному условию. Отобранные по индексу книги сортируются выражениями CASE;
+-- без фильтров для каждого поля сортировки свой запрос, чтобы LIMIT читал нужный индекс по порядку.
+CREATE OR REPLACE FUNCTION FindBooks(p_title VARCHAR(255), p_author VARCHAR(255), p_year INT, p_sort VARCHAR(10), p_limit INT)
+RETURNS TABLE(id INT, title VARCHAR(255), author VARCHAR(255), year INT)
+LANGUAGE plpgsql
+STABLE
+AS $$
+BEGIN
+IF p_sort IS NULL OR p_sort NOT IN ('id', 'title', 'author', 'year') THEN
+    RAISE EXCEPTION 'Некорректное поле сортировки: %', p_sort;
+END IF;
+IF p_title IS NOT NULL AND p_author IS NOT NULL AND p_year IS NOT NULL THEN
+    RETURN QUERY SELECT b.id, b.title, b.author, b.year FROM book b
+    WHERE b.title = p_title AND b.author = p_author AND b.year = p_year
+    ORDER BY CASE p_sort WHEN 'title' THEN b.title WHEN 'author' THEN b.author END, CASE p_sort WHEN 'year' THEN b.year END, b.id
+    LIMIT p_limit;
+ELSIF p_title IS NOT NULL AND p_author IS NOT NULL THEN
+    RETURN QUERY SELECT b.id, b.title, b.author, b.year FROM book b
+    WHERE b.title = p_title AND b.author = p_author
+    ORDER BY CASE p_sort WHEN 'title' THEN b.title WHEN 'author' THEN b.author END, CASE p_sort WHEN 'year' THEN b.year END, b.id
+    LIMIT p_limit;
+ELSIF p_title IS NOT NULL AND p_year IS NOT NULL THEN
+    RETURN QUERY SELECT b.id, b.title, b.author, b.year FROM book b
+    WHERE b.title = p_title AND b.year = p_year
+    ORDER BY CASE p_sort WHEN 'title' THEN b.title WHEN 'author' THEN b.author END, CASE p_sort WHEN 'year' THEN b.year END, b.id
+    LIMIT p_limit;
+ELSIF p_author IS NOT NULL AND p_year IS NOT NULL THEN
+    RETURN QUERY SELECT b.id, b.title, b.author, b.year FROM book b
+    WHERE b.author = p_author AND b.year = p_year
+    ORDER BY CASE p_sort WHEN 'title' THEN b.title WHEN 'author' THEN b.author END, CASE p_sort WHEN 'year' THEN b.year END, b.id
+    LIMIT p_limit;
+ELSIF p_title IS NOT NULL THEN
+    RETURN QUERY SELECT b.id, b.title, b.author, b.year FROM book b
+    WHERE b.title = p_title
+    ORDER BY CASE p_sort WHEN 'title' THEN b.title WHEN 'author' THEN b.author END, CASE p_sort WHEN 'year' THEN b.year END, b.id
+    LIMIT p_limit;
+ELSIF p_author IS NOT NULL THEN
+    RETURN QUERY SELECT b.id, b.title, b.author, b.year FROM book b
+    WHERE b.author = p_author
+    ORDER BY CASE p_sort WHEN 'title' THEN b.title WHEN 'author' THEN b.author END, CASE p_sort WHEN 'year' THEN b.year END, b.id
+    LIMIT p_limit;
+ELSIF p_year IS NOT NULL THEN
+    RETURN QUERY SELECT b.id, b.title, b.author, b.year FROM book b
+    WHERE b.year = p_year
+    ORDER BY CASE p_sort WHEN 'title' THEN b.title WHEN 'author' THEN b.author END, CASE p_sort WHEN 'year' THEN b.year END, b.id
+    LIMIT p_limit;
+ELSIF p_sort = 'title' THEN
+    RETURN QUERY SELECT b.id, b.title, b.author, b.year FROM book b ORDER BY b.title, b.id LIMIT p_limit;
+ELSIF p_sort = 'author' THEN
+    RETURN QUERY SELECT b.id, b.title, b.author, b.year FROM book b ORDER BY b.author, b.id LIMIT p_limit;
+ELSIF p_sort = 'year' THEN
+    RETURN QUERY SELECT b.id, b.title, b.author, b.year FROM book b ORDER BY b.year, b.id LIMIT p_limit;
+ELSE
+    RETURN QUERY SELECT b.id, b.title, b.author, b.year FROM book b ORDER BY b.id LIMIT p_limit;
+END IF;
+END;
+$$;
+
 -- Обновление книги
 CREATE OR REPLACE PROCEDURE UpdateBook(p_id INT, p_title VARCHAR(255), p_author VARCHAR(255), p_year INT)
 LANGUAGE plpgsql
@@ -72,6 +196,30 @@ DELETE FROM book WHERE book.title = p_title;
 END;
 $$;
 
+-- Удаление книг по списку id одной командой
+CREATE OR REPLACE PROCEDURE DeleteBooksByIds(p_ids INT[])
+LANGUAGE plpgsql
+AS $$
+BEGIN
+DELETE FROM book WHERE book.id = ANY(p_ids);
+END;
+$$;
+
+-- Обновление нескольких книг одной командой: элементы массивов с одинаковым номером описывают одну книгу,
+-- NULL в названии, авторе или годе оставляет прежнее значение
+CREATE OR REPLACE PROCEDURE UpdateBooks(p_ids INT[], p_titles VARCHAR(255)[], p_authors VARCHAR(255)[], p_years INT[])
+LANGUAGE plpgsql
+AS $$
+BEGIN
+UPDATE book
+SET title = COALESCE(u.title, book.title),
+    author = COALESCE(u.author, book.author),
+    year = COALESCE(u.year, book.year)
+FROM unnest(p_ids, p_titles, p_authors, p_years) AS u(id, title, author, year)
+WHERE book.id = u.id;
+END;
+$$;
+
 -- Вывод всего содержимого таблицы
 CREATE OR REPLACE FUNCTION ViewAllRecords()
 RETURNS TABLE(id INT, title VARCHAR(255), author VARCHAR(255), year INT)
@@ -82,16 +230,96 @@ RETURN QUERY SELECT * FROM book ORDER BY id;
 END;
 $$;
 
+-- Постраничный вывод записей (keyset-пагинация: записи с id больше p_after_id)
+CREATE OR REPLACE FUNCTION ViewRecordsPage(p_after_id INT, p_limit INT)
+RETURNS TABLE(id INT, title VARCHAR(255), author VARCHAR(255), year INT)
+LANGUAGE plpgsql
+AS $$
+BEGIN
+RETURN QUERY SELECT * FROM book WHERE book.id > p_after_id ORDER BY book.id LIMIT p_limit;
+END;
+$$;
+
+-- Сводная статистика каталога: число книг, авторов и лет издания, первый и последний год.
+-- Читается из агрегатов с учетом журнала дельт, которые пишут триггеры на book (см. миграции V4 и V6);
+-- перед чтением журнал по возможности сворачивается в агрегаты
+CREATE OR REPLACE FUNCTION CatalogSummary()
+RETURNS TABLE(books BIGINT, authors BIGINT, years BIGINT, min_year INT, max_year INT)
+LANGUAGE plpgsql
+AS $$
+BEGIN
+PERFORM book_stats_fold();
+RETURN QUERY SELECT COALESCE(sum(s.books), 0)::BIGINT, (SELECT count(*) FROM book_author_totals), count(*), min(s.year), max(s.year)
+FROM book_year_totals s;
+END;
+$$;
+
+-- Число книг по авторам (самые многочисленные первыми, не более p_limit авторов)
+CREATE OR REPLACE FUNCTION BooksPerAuthor(p_limit INT)
+RETURNS TABLE(author VARCHAR(255), books BIGINT)
+LANGUAGE plpgsql
+AS $$
+BEGIN
+PERFORM book_stats_fold();
+RETURN QUERY SELECT s.author, s.books FROM book_author_totals s ORDER BY s.books DESC, s.author LIMIT p_limit;
+END;
+$$;
+
+-- Число книг по годам издания
+CREATE OR REPLACE FUNCTION BooksPerYear()
+RETURNS TABLE(year INT, books BIGINT)
+LANGUAGE plpgsql
+AS $$
+BEGIN
+PERFORM book_stats_fold();
+RETURN QUERY SELECT s.year, s.books FROM book_year_totals s ORDER BY s.year;
+END;
+$$;
+
+-- Пересчет агрегатов статистики по таблице book (на случай расхождения, например после отключения триггеров)
+CREATE OR REPLACE PROCEDURE RefreshCatalogStatistics()
+LANGUAGE plpgsql
+AS $$
+BEGIN
+LOCK TABLE book IN SHARE MODE;
+-- Дождаться свертки, которая уже выполняется, и не дать начаться новой
+PERFORM pg_advisory_xact_lock(hashtext('book_stats_fold'));
+DELETE FROM book_stats_delta;
+DELETE FROM book_author_stats;
+DELETE FROM book_year_stats;
+INSERT INTO book_author_stats (author, books) SELECT book.author, count(*) FROM book GROUP BY book.author;
+INSERT INTO book_year_stats (year, books) SELECT book.year, count(*) FROM book GROUP BY book.year;
+END;
+$$;
+
 -- Создание роли администратора
+DO $$
+BEGIN
+IF NOT EXISTS (SELECT FROM pg_roles WHERE rolname = 'admin') THEN
 CREATE ROLE admin WITH LOGIN PASSWORD 'admin_password';
+END IF;
+END;
+$$;
 ALTER ROLE admin WITH SUPERUSER; -- Администратор имеет все права
 
 -- Создание роли модератора
+DO $$
+BEGIN
+IF NOT EXISTS (SELECT FROM pg_roles WHERE rolname = 'moderator') THEN
 CREATE ROLE moderator WITH LOGIN PASSWORD 'moderator_password';
+END IF;
+END;
+$$;
 GRANT ALL PRIVILEGES ON DATABASE library TO moderator; -- Модератор имеет все права на базу данных, кроме создания/удаления базы
 
 -- Создание роли гостя
+DO $$
+BEGIN
+IF NOT EXISTS (SELECT FROM pg_roles WHERE rolname = 'guest') THEN
 CREATE ROLE guest WITH LOGIN PASSWORD 'guest_password';
+END IF;
+END;
+$$;
 GRANT SELECT ON ALL TABLES IN SCHEMA public TO guest; -- Гость может только читать данные
 
 -- Предоставление прав администратору
@@ -99,27 +327,53 @@ GRANT ALL PRIVILEGES ON DATABASE library TO admin; -- Полный доступ
 GRANT ALL PRIVILEGES ON TABLE book TO admin; -- Полный доступ к таблице book
 GRANT EXECUTE ON PROCEDURE ClearTable() TO admin; -- Доступ к процедуре очистки таблицы
 GRANT EXECUTE ON PROCEDURE AddBook(VARCHAR, VARCHAR, INT) TO admin; -- Доступ к процедуре добавления книги
+GRANT EXECUTE ON PROCEDURE AddBooks(VARCHAR[], VARCHAR[], INT[]) TO admin; -- Доступ к процедуре добавления нескольких книг
 GRANT EXECUTE ON FUNCTION FindBookByTitle(VARCHAR) TO admin; -- Доступ к функции поиска по названию
 GRANT EXECUTE ON FUNCTION FindBookByAuthor(VARCHAR) TO admin; -- Доступ к функции поиска по автору
 GRANT EXECUTE ON FUNCTION FindBookByYear(INT) TO admin; -- Доступ к функции поиска по году
+GRANT EXECUTE ON FUNCTION SearchBooks(VARCHAR, INT) TO admin; -- Доступ к функции ранжированного поиска
+GRANT EXECUTE ON FUNCTION FindBooks(VARCHAR, VARCHAR, INT, VARCHAR, INT) TO admin; -- Доступ к функции комбинированного поиска
 GRANT EXECUTE ON PROCEDURE UpdateBook(INT, VARCHAR, VARCHAR, INT) TO admin; -- Доступ к процедуре обновления книги
 GRANT EXECUTE ON PROCEDURE DeleteBookByTitle(VARCHAR) TO admin; -- Доступ к процедуре удаления книги по названию
+GRANT EXECUTE ON PROCEDURE DeleteBooksByIds(INT[]) TO admin; -- Доступ к процедуре удаления книг по списку id
+GRANT EXECUTE ON PROCEDURE UpdateBooks(INT[], VARCHAR[], VARCHAR[], INT[]) TO admin; -- Доступ к процедуре обновления нескольких книг
 GRANT EXECUTE ON FUNCTION ViewAllRecords() TO admin; -- Доступ к функции просмотра всех записей
+GRANT EXECUTE ON FUNCTION ViewRecordsPage(INT, INT) TO admin; -- Доступ к функции постраничного просмотра записей
+GRANT EXECUTE ON FUNCTION CatalogSummary() TO admin; -- Доступ к сводной статистике каталога
+GRANT EXECUTE ON FUNCTION BooksPerAuthor(INT) TO admin; -- Доступ к статистике по авторам
+GRANT EXECUTE ON FUNCTION BooksPerYear() TO admin; -- Доступ к статистике по годам издания
+GRANT EXECUTE ON PROCEDURE RefreshCatalogStatistics() TO admin; -- Доступ к процедуре пересчета статистики
 
 -- Предоставление прав модератору
 GRANT SELECT, INSERT, UPDATE, DELETE ON TABLE book TO moderator; -- Доступ к данным таблицы book
 GRANT EXECUTE ON PROCEDURE ClearTable() TO moderator; -- Доступ к процедуре очистки таблицы
 GRANT EXECUTE ON PROCEDURE AddBook(VARCHAR, VARCHAR, INT) TO moderator; -- Доступ к процедуре добавления книги
+GRANT EXECUTE ON PROCEDURE AddBooks(VARCHAR[], VARCHAR[], INT[]) TO moderator; -- Доступ к процедуре добавления нескольких книг
 GRANT EXECUTE ON FUNCTION FindBookByTitle(VARCHAR) TO moderator; -- Доступ к функции поиска по названию
 GRANT EXECUTE ON FUNCTION FindBookByAuthor(VARCHAR) TO moderator; -- Доступ к функции поиска по автору
 GRANT EXECUTE ON FUNCTION FindBookByYear(INT) TO moderator; -- Доступ к функции поиска по году
+GRANT EXECUTE ON FUNCTION SearchBooks(VARCHAR, INT) TO moderator; -- Доступ к функции ранжированного поиска
+GRANT EXECUTE ON FUNCTION FindBooks(VARCHAR, VARCHAR, INT, VARCHAR, INT) TO moderator; -- Доступ к функции комбинированного поиска
 GRANT EXECUTE ON PROCEDURE UpdateBook(INT, VARCHAR, VARCHAR, INT) TO moderator; -- Доступ к процедуре обновления книги
 GRANT EXECUTE ON PROCEDURE DeleteBookByTitle(VARCHAR) TO moderator; -- Доступ к процедуре удаления книги по названию
+GRANT EXECUTE ON PROCEDURE DeleteBooksByIds(INT[]) TO moderator; -- Доступ к процедуре удаления книг по списку id
+GRANT EXECUTE ON PROCEDURE UpdateBooks(INT[], VARCHAR[], VARCHAR[], INT[]) TO moderator; -- Доступ к процедуре обновления нескольких книг
 GRANT EXECUTE ON FUNCTION ViewAllRecords() TO moderator; -- Доступ к функции просмотра всех записей
+GRANT EXECUTE ON FUNCTION ViewRecordsPage(INT, INT) TO moderator; -- Доступ к функции постраничного просмотра записей
+GRANT SELECT ON TABLE book_author_stats, book_year_stats, book_author_totals, book_year_totals TO moderator; -- Чтение агрегатов статистики
+GRANT EXECUTE ON FUNCTION CatalogSummary() TO moderator; -- Доступ к сводной статистике каталога
+GRANT EXECUTE ON FUNCTION BooksPerAuthor(INT) TO moderator; -- Доступ к статистике по авторам
+GRANT EXECUTE ON FUNCTION BooksPerYear() TO moderator; -- Доступ к статистике по годам издания
 
 -- Предоставление прав гостю
 GRANT SELECT ON TABLE book TO guest; -- Доступ только для чтения таблицы book
 GRANT EXECUTE ON FUNCTION FindBookByTitle(VARCHAR) TO guest; -- Доступ к функции поиска по названию
 GRANT EXECUTE ON FUNCTION FindBookByAuthor(VARCHAR) TO guest; -- Доступ к функции поиска по автору
 GRANT EXECUTE ON FUNCTION FindBookByYear(INT) TO guest; -- Доступ к функции поиска по году
-GRANT EXECUTE ON FUNCTION ViewAllRecords() TO guest; -- Доступ к функции просмотра всех записей
\ No newline at end of file
+GRANT EXECUTE ON FUNCTION SearchBooks(VARCHAR, INT) TO guest; -- Доступ к функции ранжированного поиска
+GRANT EXECUTE ON FUNCTION FindBooks(VARCHAR, VARCHAR, INT, VARCHAR, INT) TO guest; -- Доступ к функции комбинированного поиска
+GRANT EXECUTE ON FUNCTION ViewAllRecords() TO guest; -- Доступ к функции просмотра всех записей
+GRANT EXECUTE ON FUNCTION ViewRecordsPage(INT, INT) TO guest; -- Доступ к функции постраничного просмотра записей
+GRANT EXECUTE ON FUNCTION CatalogSummary() TO guest; -- Доступ к сводной статистике каталога
+GRANT EXECUTE ON FUNCTION BooksPerAuthor(INT) TO guest; -- Доступ к статистике по авторам
+GRANT EXECUTE ON FUNCTION BooksPerYear() TO guest; -- Доступ к статистике по годам издания
\ No newline at end of file
@@ -0,0 +1,304 @@
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyOut;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+// Потоковая выгрузка всех книг в файл CSV или JSON (столбцы: id, название, автор, год), при необходимости со сжатием gzip.
+// Строки читаются с сервера по мере записи: CSV - командой COPY TO STDOUT, JSON - через серверный курсор
+// (отключенный autocommit и setFetchSize), поэтому расход памяти не зависит от размера таблицы.
+// Файл пишется во временный файл и переименовывается только после успешного завершения выгрузки.
+public class BookExporter {
+    private static final String SELECT_SQL = "SELECT id, title, author, year FROM book ORDER BY id";
+    private static final String COPY_SQL = "COPY (" + SELECT_SQL + ") TO STDOUT WITH (FORMAT csv)";
+    private static final String CSV_HEADER = "id,title,author,year\n";
+    // Размер буфера записи в файл
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Как часто обновлять индикатор прогресса
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+    // Формат файла выгрузки
+    public enum Format { CSV, JSON }
+
+    private final Format format;
+    private final boolean gzip;
+    private final int fetchSize;
+
+    // Итог выгрузки
+    public static class Result {
+        public long rows;
+        public long bytes;
+        public long millis;
+        public boolean usedCopy;
+
+        public double rowsPerSecond() {
+            return millis > 0 ? rows * 1000.0 / millis : rows;
+        }
+    }
+
+    // Обработчик прогресса выгрузки
+    public interface ProgressListener {
+        void onProgress(long rows, long bytes, double rowsPerSecond);
+    }
+
+    public BookExporter(Format format, boolean gzip, int fetchSize) {
+        if (fetchSize < 1) {
+            throw new IllegalArgumentException("Некорректный размер порции чтения: " + fetchSize);
+        }
+        this.format = format;
+        this.gzip = gzip;
+        this.fetchSize = fetchSize;
+    }
+
+    // Метод для определения формата по имени файла: .json и .json.gz - JSON, иначе CSV
+    public static Format formatOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".json") || name.endsWith(".json.gz") ? Format.JSON : Format.CSV;
+    }
+
+    // Метод для выгрузки книг в файл
+    public Result exportFile(Connection conn, Path file, DatabaseExecutor.OperationContext ctx,
+                             ProgressListener listener) throws IOException, SQLException {
+        Result result = new Result();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long start = System.currentTimeMillis();
+        Progress progress = new Progress(result, listener, start);
+
+        boolean completed = false;
+        try {
+            Sink sink = new Sink(temp, gzip);
+            try (sink) {
+                if (format == Format.CSV && conn.isWrapperFor(PGConnection.class)) {
+                    result.usedCopy = true;
+                    copyCsv(conn, sink, result, ctx, progress);
+                } else {
+                    queryRows(conn, sink, result, ctx, progress);
+                }
+            }
+            // Файл закрыт (буфер и gzip сброшены на диск) до переноса под итоговым именем
+            result.bytes = sink.bytes;
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        result.millis = System.currentTimeMillis() - start;
+        listener.onProgress(result.rows, result.bytes, result.rowsPerSecond());
+        return result;
+    }
+
+    // Выгрузка CSV командой COPY TO STDOUT: сервер сам формирует строки, клиент только пишет их в файл
+    private void copyCsv(Connection conn, Sink sink, Result result, DatabaseExecutor.OperationContext ctx,
+                         Progress progress) throws IOException, SQLException {
+        sink.write(CSV_HEADER);
+        PGConnection pgConnection = conn.unwrap(PGConnection.class);
+        // Отмена прерывает COPY на сервере (как при загрузке в BookImporter), а не прерыванием потока,
+        // которое закрыло бы соединение пула во время чтения из сокета
+        Runnable cancel = () -> {
+            try {
+                pgConnection.cancelQuery();
+            } catch (SQLException ignored) {
+                // COPY уже завершена или соединение закрыто
+            }
+        };
+        ctx.onCancel(cancel);
+        CopyOut copyOut = null;
+        try {
+            copyOut = pgConnection.getCopyAPI().copyOut(COPY_SQL);
+            byte[] row;
+            // Сервер передает каждую строку отдельным сообщением
+            while ((row = copyOut.readFromCopy()) != null) {
+                if (ctx.isCancelled()) {
+                    throw new SQLException("Выгрузка отменена");
+                }
+                sink.write(row);
+                result.rows++;
+                progress.update(sink);
+            }
+        } finally {
+            ctx.untrack(cancel);
+            if (copyOut != null && copyOut.isActive()) {
+                copyOut.cancelCopy();
+            }
+        }
+    }
+
+    // Выгрузка через серверный курсор: строки приходят порциями по fetchSize
+    private void queryRows(Connection conn, Sink sink, Result result, DatabaseExecutor.OperationContext ctx,
+                           Progress progress) throws IOException, SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        // Курсор открывается только внутри транзакции, иначе драйвер загрузит весь результат в память
+        conn.setAutoCommit(false);
+        try (PreparedStatement stmt = ctx.track(conn.prepareStatement(SELECT_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY))) {
+            stmt.setFetchSize(fetchSize);
+            sink.write(format == Format.JSON ? "[\n" : CSV_HEADER);
+            StringBuilder sb = new StringBuilder(256);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (ctx.isCancelled()) {
+                        throw new SQLException("Выгрузка отменена");
+                    }
+                    sb.setLength(0);
+                    if (format == Format.JSON) {
+                        if (result.rows > 0) {
+                            sb.append(",\n");
+                        }
+                        sb.append("{\"id\":").append(rs.getInt(1)).append(",\"title\":");
+                        appendJson(sb, rs.getString(2)).append(",\"author\":");
+                        appendJson(sb, rs.getString(3)).append(",\"year\":").append(rs.getInt(4)).append('}');
+                    } else {
+                        sb.append(rs.getInt(1)).append(',');
+                        appendCsv(sb, rs.getString(2)).append(',');
+                        appendCsv(sb, rs.getString(3)).append(',').append(rs.getInt(4)).append('\n');
+                    }
+                    sink.write(sb);
+                    result.rows++;
+                    progress.update(sink);
+                }
+            }
+            if (format == Format.JSON) {
+                sink.write(result.rows > 0 ? "\n]\n" : "]\n");
+            }
+        } finally {
+            try {
+                conn.rollback(); // Транзакция только читала данные
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static StringBuilder appendCsv(StringBuilder sb, String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return sb.append(value);
+        }
+        return sb.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static StringBuilder appendJson(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"');
+    }
+
+    // Периодическое уведомление о прогрессе
+    private static class Progress {
+        private final Result result;
+        private final ProgressListener listener;
+        private final long start;
+        private long last;
+
+        Progress(Result result, ProgressListener listener, long start) {
+            this.result = result;
+            this.listener = listener;
+            this.start = start;
+            this.last = start;
+        }
+
+        void update(Sink sink) {
+            long now = System.currentTimeMillis();
+            if (now - last >= PROGRESS_INTERVAL_MILLIS) {
+                last = now;
+                listener.onProgress(result.rows, sink.bytes, result.rows * 1000.0 / (now - start));
+            }
+        }
+    }
+
+    // Запись в файл через буфер фиксированного размера (и, при необходимости, через сжатие gzip)
+    private static class Sink implements AutoCloseable {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private boolean closed;
+        // Число байт до сжатия
+        long bytes;
+
+        Sink(Path file, boolean gzip) throws IOException {
+            FileChannel fileChannel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            channel = gzip
+                    ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE))
+                    : fileChannel;
+        }
+
+        void write(CharSequence text) throws IOException {
+            write(text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        void write(byte[] data) throws IOException {
+            bytes += data.length;
+            int offset = 0;
+            while (offset < data.length) {
+                if (!buffer.hasRemaining()) {
+                    flush();
+                }
+                int length = Math.min(buffer.remaining(), data.length - offset);
+                buffer.put(data, offset, length);
+                offset += length;
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        // Запись остатка буфера и закрытие файла (повторный вызов ничего не делает)
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
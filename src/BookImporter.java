@@ -0,0 +1,370 @@
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+
+// Массовая загрузка книг из файла CSV или TSV (столбцы: название, автор, год).
+// Файл читается потоково и загружается порциями: каждая порция передается одной командой
+// COPY FROM STDIN (или пакетом вызовов AddBook, если COPY недоступен) и фиксируется отдельной транзакцией.
+// Некорректные строки не прерывают загрузку, а записываются в файл <имя файла>.rejected.txt.
+public class BookImporter {
+    private static final String COPY_SQL = "COPY book (title, author, year) FROM STDIN WITH (FORMAT csv)";
+    private static final int MAX_FIELD_LENGTH = 255;
+    // Как часто обновлять индикатор прогресса
+    private static final long PROGRESS_INTERVAL_MILLIS = 500;
+
+    private final int chunkSize;
+    private final boolean useCopy;
+
+    // Итог загрузки
+    public static class Result {
+        public long read;
+        public long loaded;
+        public long rejected;
+        public long millis;
+        public boolean usedCopy;
+        public Path rejectedFile;
+
+        public double rowsPerSecond() {
+            return millis > 0 ? loaded * 1000.0 / millis : loaded;
+        }
+    }
+
+    // Обработчик прогресса загрузки
+    public interface ProgressListener {
+        void onProgress(long read, long loaded, long rejected, double rowsPerSecond);
+    }
+
+    // Строка файла, прошедшая проверку
+    private static class Row {
+        final long line;
+        final String title;
+        final String author;
+        final int year;
+
+        Row(long line, String title, String author, int year) {
+            this.line = line;
+            this.title = title;
+            this.author = author;
+            this.year = year;
+        }
+    }
+
+    public BookImporter(int chunkSize, boolean useCopy) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Некорректный размер порции: " + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.useCopy = useCopy;
+    }
+
+    // Метод для загрузки файла. Разделитель определяется по расширению: .tsv/.tab - табуляция, иначе запятая.
+    // Первая строка пропускается, если она похожа на заголовок (title, author, year).
+    public Result importFile(Connection conn, Path file, DatabaseExecutor.OperationContext ctx,
+                             ProgressListener listener) throws IOException, SQLException {
+        String name = file.getFileName().toString().toLowerCase();
+        char delimiter = name.endsWith(".tsv") || name.endsWith(".tab") ? '\t' : ',';
+
+        Result result = new Result();
+        result.usedCopy = useCopy && conn.isWrapperFor(PGConnection.class);
+        long start = System.currentTimeMillis();
+        long lastProgress = start;
+
+        // Отчет прошлой загрузки этого файла удаляется, чтобы не показывать устаревшие ошибки
+        Files.deleteIfExists(rejectedFile(file));
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        BufferedWriter rejectedWriter = null;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<Row> chunk = new ArrayList<>(Math.min(chunkSize, 65536));
+            long[] line = {0};
+            boolean first = true;
+            List<String> fields;
+
+            while ((fields = readRecord(reader, delimiter, line)) != null) {
+                if (ctx.isCancelled()) {
+                    throw new SQLException("Загрузка отменена");
+                }
+                if (first) {
+                    first = false;
+                    if (isHeader(fields)) {
+                        continue;
+                    }
+                }
+                if (fields.size() == 1 && fields.get(0).isEmpty()) {
+                    continue; // Пустая строка
+                }
+                result.read++;
+
+                String error = validate(fields);
+                if (error != null) {
+                    rejectedWriter = reject(rejectedWriter, file, result, line[0], error, String.join(String.valueOf(delimiter), fields));
+                } else {
+                    chunk.add(new Row(line[0], fields.get(0).trim(), fields.get(1).trim(), Integer.parseInt(fields.get(2).trim())));
+                }
+
+                if (chunk.size() >= chunkSize) {
+                    rejectedWriter = loadChunk(conn, chunk, file, result, rejectedWriter, ctx);
+                    chunk.clear();
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - lastProgress >= PROGRESS_INTERVAL_MILLIS) {
+                    lastProgress = now;
+                    listener.onProgress(result.read, result.loaded, result.rejected, result.loaded * 1000.0 / (now - start));
+                }
+            }
+            if (!chunk.isEmpty()) {
+                rejectedWriter = loadChunk(conn, chunk, file, result, rejectedWriter, ctx);
+            }
+        } finally {
+            if (rejectedWriter != null) {
+                rejectedWriter.close();
+            }
+            try {
+                conn.rollback(); // Незафиксированная порция (при ошибке или отмене) отменяется
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+
+        result.millis = System.currentTimeMillis() - start;
+        listener.onProgress(result.read, result.loaded, result.rejected, result.rowsPerSecond());
+        return result;
+    }
+
+    // Загрузка одной порции в отдельной транзакции.
+    // Если порция целиком не загрузилась, она повторяется построчно, чтобы отделить ошибочные строки.
+    private BufferedWriter loadChunk(Connection conn, List<Row> chunk, Path file, Result result,
+                                     BufferedWriter rejectedWriter, DatabaseExecutor.OperationContext ctx)
+            throws IOException, SQLException {
+        try {
+            if (result.usedCopy) {
+                copyChunk(conn, chunk, ctx);
+            } else {
+                batchChunk(conn, chunk, ctx);
+            }
+            conn.commit();
+            result.loaded += chunk.size();
+            return rejectedWriter;
+        } catch (SQLException ex) {
+            conn.rollback();
+            if (ctx.isCancelled()) {
+                throw ex;
+            }
+        }
+
+        // Книги порции считаются загруженными только после фиксации транзакции
+        long loaded = 0;
+        try (CallableStatement stmt = ctx.track(conn.prepareCall("CALL AddBook(?, ?, ?)"))) {
+            for (Row row : chunk) {
+                Savepoint savepoint = conn.setSavepoint();
+                try {
+                    bind(stmt, row);
+                    stmt.execute();
+                    conn.releaseSavepoint(savepoint);
+                    loaded++;
+                } catch (SQLException ex) {
+                    if (ctx.isCancelled()) {
+                        throw ex;
+                    }
+                    conn.rollback(savepoint);
+                    rejectedWriter = reject(rejectedWriter, file, result, row.line, ex.getMessage(),
+                            row.title + ", " + row.author + ", " + row.year);
+                }
+            }
+        }
+        conn.commit();
+        result.loaded += loaded;
+        return rejectedWriter;
+    }
+
+    // Загрузка порции одной командой COPY FROM STDIN.
+    // При отмене операции серверу отправляется запрос отмены (как Statement.cancel() для обычных запросов),
+    // а цикл записи сам прерывает COPY на следующей строке.
+    private void copyChunk(Connection conn, List<Row> chunk, DatabaseExecutor.OperationContext ctx) throws SQLException {
+        PGConnection pgConnection = conn.unwrap(PGConnection.class);
+        CopyManager copyManager = pgConnection.getCopyAPI();
+        Runnable cancel = () -> {
+            try {
+                pgConnection.cancelQuery();
+            } catch (SQLException ignored) {
+                // COPY уже завершена или соединение закрыто
+            }
+        };
+        ctx.onCancel(cancel);
+        CopyIn copyIn = null;
+        try {
+            copyIn = copyManager.copyIn(COPY_SQL);
+            StringBuilder sb = new StringBuilder(256);
+            for (Row row : chunk) {
+                if (ctx.isCancelled()) {
+                    throw new SQLException("Загрузка отменена");
+                }
+                sb.setLength(0);
+                appendCsv(sb, row.title).append(',');
+                appendCsv(sb, row.author).append(',').append(row.year).append('\n');
+                byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+                copyIn.writeToCopy(bytes, 0, bytes.length);
+            }
+            copyIn.endCopy();
+        } finally {
+            ctx.untrack(cancel);
+            if (copyIn != null && copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    // Загрузка порции пакетом вызовов AddBook
+    private void batchChunk(Connection conn, List<Row> chunk, DatabaseExecutor.OperationContext ctx) throws SQLException {
+        try (CallableStatement stmt = ctx.track(conn.prepareCall("CALL AddBook(?, ?, ?)"))) {
+            for (Row row : chunk) {
+                bind(stmt, row);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static void bind(CallableStatement stmt, Row row) throws SQLException {
+        stmt.setString(1, row.title);
+        stmt.setString(2, row.author);
+        stmt.setInt(3, row.year);
+    }
+
+    // Проверка строки файла; возвращает описание ошибки или null
+    private static String validate(List<String> fields) {
+        if (fields.size() != 3) {
+            return "ожидалось 3 поля, получено " + fields.size();
+        }
+        String title = fields.get(0).trim();
+        String author = fields.get(1).trim();
+        if (title.isEmpty() || author.isEmpty()) {
+            return "название и автор должны быть заполнены";
+        }
+        if (title.length() > MAX_FIELD_LENGTH || author.length() > MAX_FIELD_LENGTH) {
+            return "название или автор длиннее " + MAX_FIELD_LENGTH + " символов";
+        }
+        try {
+            Integer.parseInt(fields.get(2).trim());
+        } catch (NumberFormatException ex) {
+            return "некорректный год издания: " + fields.get(2);
+        }
+        return null;
+    }
+
+    private static boolean isHeader(List<String> fields) {
+        return fields.size() == 3
+                && fields.get(0).trim().equalsIgnoreCase("title")
+                && fields.get(1).trim().equalsIgnoreCase("author")
+                && fields.get(2).trim().equalsIgnoreCase("year");
+    }
+
+    // Запись отклоненной строки в файл отчета (файл создается при первой ошибке)
+    private static BufferedWriter reject(BufferedWriter writer, Path file, Result result,
+                                         long line, String reason, String raw) throws IOException {
+        if (writer == null) {
+            result.rejectedFile = rejectedFile(file);
+            writer = Files.newBufferedWriter(result.rejectedFile, StandardCharsets.UTF_8);
+        }
+        writer.write("Строка " + line + ": " + reason + ": " + raw);
+        writer.newLine();
+        result.rejected++;
+        return writer;
+    }
+
+    private static Path rejectedFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".rejected.txt");
+    }
+
+    // Чтение одной записи. Для CSV поддерживаются поля в кавычках (в том числе с переводами строк).
+    // line[0] - номер последней прочитанной строки файла.
+    private static List<String> readRecord(BufferedReader reader, char delimiter, long[] line) throws IOException {
+        String text = reader.readLine();
+        if (text == null) {
+            return null;
+        }
+        line[0]++;
+
+        List<String> fields = new ArrayList<>(3);
+        if (delimiter == '\t') {
+            int from = 0;
+            int to;
+            while ((to = text.indexOf('\t', from)) >= 0) {
+                fields.add(text.substring(from, to));
+                from = to + 1;
+            }
+            fields.add(text.substring(from));
+            return fields;
+        }
+
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (true) {
+            if (i == text.length()) {
+                if (!quoted) {
+                    break;
+                }
+                // Поле в кавычках продолжается на следующей строке
+                String next = reader.readLine();
+                if (next == null) {
+                    break;
+                }
+                line[0]++;
+                field.append('\n');
+                text = next;
+                i = 0;
+                continue;
+            }
+            char c = text.charAt(i++);
+            if (quoted) {
+                if (c == '"') {
+                    if (i < text.length() && text.charAt(i) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static StringBuilder appendCsv(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        return sb.append('"');
+    }
+}
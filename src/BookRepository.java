@@ -0,0 +1,46 @@
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Операции с каталогом книг.
+// Каждая книга передается массивом {id, title, author, year}, как и в остальном коде программы.
+public interface BookRepository {
+    // Добавление книги (AddBook)
+    void addBook(String title, String author, int year) throws SQLException;
+
+    // Поиск по точному совпадению (FindBookByTitle, FindBookByAuthor, FindBookByYear)
+    List<Object[]> findByTitle(String title) throws SQLException;
+
+    List<Object[]> findByAuthor(String author) throws SQLException;
+
+    List<Object[]> findByYear(int year) throws SQLException;
+
+    // Поиск по нескольким полям сразу (FindBooks): null - фильтр по полю не задан.
+    // Результат упорядочен по полю sort (id, title, author или year) и содержит не более limit книг.
+    List<Object[]> findBooks(String title, String author, Integer year, String sort, int limit) throws SQLException;
+
+    // Ранжированный поиск по названию и автору (SearchBooks)
+    List<Object[]> search(String query, int limit) throws SQLException;
+
+    // Обновление книги по id (UpdateBook)
+    void updateBook(int id, String title, String author, int year) throws SQLException;
+
+    // Удаление книг с указанным названием (DeleteBookByTitle)
+    void deleteByTitle(String title) throws SQLException;
+
+    // Обновление нескольких книг в одной транзакции (UpdateBooks).
+    // Каждая книга - массив {id, title, author, year}; null в title, author или year оставляет прежнее значение.
+    void updateBooks(List<Object[]> books) throws SQLException;
+
+    // Удаление книг с указанными id в одной транзакции (DeleteBooksByIds)
+    void deleteByIds(int[] ids) throws SQLException;
+
+    // Удаление всех книг (ClearTable)
+    void clear() throws SQLException;
+
+    // Страница книг с id больше afterId в порядке возрастания id (ViewRecordsPage)
+    List<Object[]> viewPage(int afterId, int limit) throws SQLException;
+
+    // Последовательный просмотр всех книг в порядке возрастания id (ViewAllRecords); возвращает число книг
+    long viewAll(Consumer<Object[]> consumer) throws SQLException;
+}
@@ -0,0 +1,299 @@
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Модель таблицы книг, которая загружает записи страницами по мере прокрутки.
+// Страницы запрашиваются keyset-пагинацией по id (ViewRecordsPage), в памяти хранится
+// ограниченное число страниц, а для вытесненных страниц запоминается только id, с которого они начинаются.
+public class BookTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {"ID", "Название", "Автор", "Год"};
+    private static final String LOADING = "…";
+    // Задержка перед повторной загрузкой страницы после ошибки (удваивается при каждой новой ошибке)
+    private static final int RETRY_DELAY_MILLIS = 2000;
+    private static final int MAX_RETRY_DELAY_MILLIS = 60000;
+
+    // Загрузчик страницы: записи с id > afterId, не более limit штук, в порядке возрастания id.
+    // Каждая запись - массив {id, title, author, year}.
+    public interface PageLoader {
+        List<Object[]> load(DatabaseExecutor.OperationContext context, int afterId, int limit) throws SQLException;
+    }
+
+    private final PageLoader loader;
+    private final int pageSize;
+    private final int timeoutSeconds;
+    private final Consumer<Exception> errorHandler;
+
+    // Кэш загруженных страниц (LRU по порядку доступа)
+    private final Map<Integer, Object[][]> cache;
+    // Границы страниц: pageStart[i] - id, после которого начинается страница i
+    private int[] pageStart = new int[16];
+    // Число страниц, для которых известна граница
+    private int knownPages;
+    // Число строк, о которых знает таблица
+    private int rowCount;
+    // Есть ли записи после последней известной страницы
+    private boolean exhausted;
+    // Страницы, которые загружаются в данный момент
+    private final Set<Integer> loading = new HashSet<>();
+    // Страницы, которые не удалось загрузить: номер страницы -> число неудачных попыток подряд.
+    // Такая страница загружается повторно после паузы (см. pageFailed).
+    private final Map<Integer, Integer> failed = new HashMap<>();
+    // Страницы, для которых уже подошло время повторной загрузки
+    private final Set<Integer> retryDue = new HashSet<>();
+    // Сообщалось ли об ошибке загрузки после последнего reload() (сообщение показывается один раз)
+    private boolean errorReported;
+    // Номер загрузки таблицы: страницы, запрошенные до вызова reload(), отбрасываются
+    private int generation;
+
+    public BookTableModel(PageLoader loader, int pageSize, int maxCachedPages, int timeoutSeconds,
+                          Consumer<Exception> errorHandler) {
+        this.loader = loader;
+        this.pageSize = pageSize;
+        this.timeoutSeconds = timeoutSeconds;
+        this.errorHandler = errorHandler;
+        this.cache = new LinkedHashMap<>(maxCachedPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Object[][]> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+
+        reset();
+    }
+
+    // Сброс модели к первой странице
+    private void reset() {
+        // Первая страница начинается с самого начала таблицы
+        pageStart[0] = 0;
+        knownPages = 1;
+        rowCount = pageSize;
+        exhausted = false;
+        cache.clear();
+        loading.clear();
+        failed.clear();
+        retryDue.clear();
+        errorReported = false;
+        generation++;
+    }
+
+    // Повторная загрузка таблицы после изменения данных (вызывается в потоке EDT)
+    public void reload() {
+        reset();
+        fireTableDataChanged();
+    }
+
+    // Выбранные строки таблицы. id строк из загруженных страниц известны сразу, остальные
+    // загружаются методом resolve() по границам их страниц (диапазон id после pageStart).
+    public class Selection {
+        private final int size;
+        // id из загруженных страниц
+        private final int[] knownIds;
+        private final int knownCount;
+        // Незагруженные страницы: номер страницы -> смещения выбранных строк в ней
+        private final Map<Integer, List<Integer>> missing;
+        // Границы незагруженных страниц (снимок на момент выбора)
+        private final Map<Integer, Integer> missingStart = new HashMap<>();
+
+        private Selection(int size, int[] knownIds, int knownCount, Map<Integer, List<Integer>> missing) {
+            this.size = size;
+            this.knownIds = knownIds;
+            this.knownCount = knownCount;
+            this.missing = missing;
+            for (int page : missing.keySet()) {
+                missingStart.put(page, pageStart[page]);
+            }
+        }
+
+        // Число выбранных строк
+        public int size() {
+            return size;
+        }
+
+        // Метод для получения id всех выбранных книг (вызывается вне потока EDT).
+        // Подряд идущие незагруженные страницы загружаются одним запросом.
+        public int[] resolve(DatabaseExecutor.OperationContext context) throws SQLException {
+            int[] ids = Arrays.copyOf(knownIds, size);
+            int count = knownCount;
+            List<Integer> pages = new ArrayList<>(missing.keySet());
+            pages.sort(null);
+            int i = 0;
+            while (i < pages.size()) {
+                int first = pages.get(i);
+                int last = first;
+                while (i + 1 < pages.size() && pages.get(i + 1) == last + 1) {
+                    last = pages.get(++i);
+                }
+                i++;
+                List<Object[]> rows = loader.load(context, missingStart.get(first), (last - first + 1) * pageSize);
+                for (int page = first; page <= last; page++) {
+                    for (int offset : missing.get(page)) {
+                        int index = (page - first) * pageSize + offset;
+                        if (index < rows.size()) {
+                            ids[count++] = (Integer) rows.get(index)[0];
+                        }
+                    }
+                }
+            }
+            return Arrays.copyOf(ids, count);
+        }
+    }
+
+    // Метод для получения выбранных книг по номерам строк (вызывается в потоке EDT)
+    public Selection getSelection(int[] rowIndexes) {
+        int[] known = new int[rowIndexes.length];
+        int knownCount = 0;
+        Map<Integer, List<Integer>> missing = new HashMap<>();
+        for (int rowIndex : rowIndexes) {
+            int page = rowIndex / pageSize;
+            int offset = rowIndex % pageSize;
+            Object[][] rows = cache.get(page);
+            if (rows != null) {
+                if (offset < rows.length) {
+                    known[knownCount++] = (Integer) rows[offset][0];
+                }
+            } else if (page < knownPages) {
+                missing.computeIfAbsent(page, p -> new ArrayList<>()).add(offset);
+            }
+        }
+        int size = knownCount;
+        for (List<Integer> offsets : missing.values()) {
+            size += offsets.size();
+        }
+        return new Selection(size, known, knownCount, missing);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int page = rowIndex / pageSize;
+        Object[][] rows = cache.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return LOADING;
+        }
+        int offset = rowIndex % pageSize;
+        return offset < rows.length ? rows[offset][columnIndex] : null;
+    }
+
+    // Число страниц, которые сейчас хранятся в памяти
+    public int getCachedPageCount() {
+        return cache.size();
+    }
+
+    // Загружена ли таблица до конца
+    public boolean isExhausted() {
+        return exhausted;
+    }
+
+    // Запуск фоновой загрузки страницы (вызывается в потоке EDT)
+    private void requestPage(int page) {
+        if (page >= knownPages || (failed.containsKey(page) && !retryDue.contains(page)) || !loading.add(page)) {
+            return;
+        }
+        retryDue.remove(page);
+        int afterId = pageStart[page];
+        int requestGeneration = generation;
+
+        // Страницы загружаются без окна прогресса: пока их нет, в таблице видны заглушки
+        DatabaseExecutor.submit(null, null, timeoutSeconds, ctx -> loader.load(ctx, afterId, pageSize), rows -> {
+            if (requestGeneration != generation) {
+                return; // Таблица была перезагружена, пока шел запрос
+            }
+            loading.remove(page);
+            failed.remove(page);
+            pageLoaded(page, rows);
+        }, ex -> {
+            if (requestGeneration == generation) {
+                pageFailed(page, ex);
+            }
+        });
+    }
+
+    // Обработка ошибки загрузки страницы (в потоке EDT). Страница не запрашивается снова до истечения паузы,
+    // чтобы перерисовка не повторяла запрос непрерывно; после паузы строки перерисовываются и страница
+    // загружается заново. Об ошибке сообщается только один раз до следующего reload().
+    private void pageFailed(int page, Exception ex) {
+        loading.remove(page);
+        int attempts = failed.merge(page, 1, Integer::sum);
+        int delay = (int) Math.min(MAX_RETRY_DELAY_MILLIS, (long) RETRY_DELAY_MILLIS << Math.min(attempts - 1, 16));
+        int requestGeneration = generation;
+        Timer retry = new Timer(delay, e -> {
+            if (requestGeneration != generation || !failed.containsKey(page)) {
+                return;
+            }
+            retryDue.add(page);
+            int firstRow = page * pageSize;
+            int lastRow = Math.min(firstRow + pageSize, rowCount) - 1;
+            if (lastRow >= firstRow) {
+                fireTableRowsUpdated(firstRow, lastRow); // Перерисовка видимых строк запросит страницу снова
+            }
+        });
+        retry.setRepeats(false);
+        retry.start();
+
+        if (!errorReported) {
+            errorReported = true;
+            errorHandler.accept(ex);
+        }
+    }
+
+    // Обработка загруженной страницы (в потоке EDT)
+    private void pageLoaded(int page, List<Object[]> rows) {
+        cache.put(page, rows.toArray(new Object[0][]));
+        int firstRow = page * pageSize;
+
+        if (page == knownPages - 1 && !exhausted) {
+            if (rows.size() == pageSize) {
+                // Страница заполнена полностью - значит, за ней может быть следующая
+                if (knownPages == pageStart.length) {
+                    pageStart = Arrays.copyOf(pageStart, pageStart.length * 2);
+                }
+                pageStart[knownPages++] = (Integer) rows.get(rows.size() - 1)[0];
+                rowCount += pageSize;
+                fireTableRowsUpdated(firstRow, firstRow + pageSize - 1);
+                fireTableRowsInserted(rowCount - pageSize, rowCount - 1);
+                return;
+            }
+
+            // Последняя страница - убираем лишние строки-заглушки
+            exhausted = true;
+            int oldCount = rowCount;
+            rowCount = firstRow + rows.size();
+            if (rows.size() > 0) {
+                fireTableRowsUpdated(firstRow, rowCount - 1);
+            }
+            if (rowCount < oldCount) {
+                fireTableRowsDeleted(rowCount, oldCount - 1);
+            }
+            return;
+        }
+
+        int lastRow = Math.min(firstRow + pageSize, rowCount) - 1;
+        if (lastRow >= firstRow) {
+            fireTableRowsUpdated(firstRow, lastRow);
+        }
+    }
+}
@@ -0,0 +1,545 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+// Снимок каталога книг в двоичном файле для поиска без подключения к базе данных (только чтение).
+//
+// Формат файла:
+//   заголовок   - магическое число, версия, число книг, время создания и смещения разделов;
+//   данные      - книги в порядке возрастания id: id (int), год (int), длина и UTF-8 байты названия и автора,
+//                 затем названия и автора в нижнем регистре (для быстрого поиска);
+//   индексы     - по id, названию, автору и году. Элемент индекса - long: в старших 32 битах ключ
+//                 (id, год или хэш FNV-1a байтов строки), в младших - смещение книги в разделе данных.
+//                 Индексы отсортированы, поэтому поиск - двоичный поиск по ключу; при совпадении хэшей
+//                 строки дополнительно сравниваются побайтно;
+//   префиксы    - смещения книг (int), упорядоченные по байтам названия в нижнем регистре: книги, название
+//                 которых начинается с запроса, идут подряд и находятся двоичным поиском (быстрый поиск).
+// Файл отображается в память целиком, и поиск читает его без создания промежуточных объектов:
+// строки создаются только для найденных книг.
+public class CatalogSnapshot implements BookRepository {
+    private static final long MAGIC = 0x4C49425341503031L; // "LIBSAP01"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 80;
+    // Размер страницы при чтении таблицы для снимка
+    private static final int EXPORT_PAGE_SIZE = 5000;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final long createdMillis;
+    private final int dataOffset;
+    private final int idIndex;
+    private final int titleIndex;
+    private final int authorIndex;
+    private final int yearIndex;
+    private final int prefixIndex;
+
+    // Метод для открытия снимка
+    public static CatalogSnapshot open(Path file) throws IOException {
+        return new CatalogSnapshot(file);
+    }
+
+    private CatalogSnapshot(Path file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Некорректный размер файла снимка: " + size);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getLong(0) != MAGIC) {
+            throw new IOException("Файл не является снимком каталога: " + file);
+        }
+        if (buffer.getInt(8) != VERSION) {
+            throw new IOException("Неподдерживаемая версия снимка каталога: " + buffer.getInt(8));
+        }
+        count = buffer.getInt(12);
+        createdMillis = buffer.getLong(16);
+        dataOffset = (int) buffer.getLong(24);
+        idIndex = (int) buffer.getLong(40);
+        titleIndex = (int) buffer.getLong(48);
+        authorIndex = (int) buffer.getLong(56);
+        yearIndex = (int) buffer.getLong(64);
+        prefixIndex = (int) buffer.getLong(72);
+        if (prefixIndex + (long) count * Integer.BYTES > buffer.capacity()) {
+            throw new IOException("Файл снимка поврежден: " + file);
+        }
+    }
+
+    // Метод для поиска последнего снимка с базовым именем file; null - снимков нет.
+    // Каждый снимок записывается в новый файл <file>.<время создания>: файл, отображенный в память
+    // читающим процессом, в Windows нельзя ни заменить, ни удалить.
+    public static Path latest(Path file) throws IOException {
+        Path latest = null;
+        long latestMillis = -1;
+        for (Path candidate : generations(file)) {
+            long millis = generation(file, candidate);
+            if (!candidate.getFileName().toString().endsWith(".tmp") && millis > latestMillis) {
+                latest = candidate;
+                latestMillis = millis;
+            }
+        }
+        return latest;
+    }
+
+    // Метод для записи снимка: таблица читается страницами через repository и пишется во временный файл,
+    // который после успешной записи становится новым снимком <file>.<время создания>.
+    // Прежние снимки удаляются, если их не держит открытыми другой процесс; иначе - при следующей записи.
+    public static int write(BookRepository repository, Path file) throws IOException, SQLException {
+        long createdMillis = System.currentTimeMillis();
+        Path target = file.resolveSibling(file.getFileName() + "." + createdMillis);
+        Path temp = file.resolveSibling(target.getFileName() + ".tmp");
+        long[] ids = new long[1024];
+        long[] titles = new long[1024];
+        long[] authors = new long[1024];
+        long[] years = new long[1024];
+        // Названия в нижнем регистре: по ним упорядочивается раздел префиксов
+        byte[][] lowerTitles = new byte[1024][];
+        int[] offsets = new int[1024];
+        int count = 0;
+        long dataLength = 0;
+
+        boolean completed = false;
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024))) {
+                out.write(new byte[HEADER_SIZE]); // Заголовок записывается в конце, когда известны смещения
+                int after = 0;
+                while (true) {
+                    List<Object[]> rows = repository.viewPage(after, EXPORT_PAGE_SIZE);
+                    for (Object[] row : rows) {
+                        if (count == ids.length) {
+                            ids = Arrays.copyOf(ids, count * 2);
+                            titles = Arrays.copyOf(titles, count * 2);
+                            authors = Arrays.copyOf(authors, count * 2);
+                            years = Arrays.copyOf(years, count * 2);
+                            lowerTitles = Arrays.copyOf(lowerTitles, count * 2);
+                            offsets = Arrays.copyOf(offsets, count * 2);
+                        }
+                        int id = (Integer) row[0];
+                        int year = (Integer) row[3];
+                        byte[] title = ((String) row[1]).getBytes(StandardCharsets.UTF_8);
+                        byte[] author = ((String) row[2]).getBytes(StandardCharsets.UTF_8);
+                        byte[] lowerTitle = ((String) row[1]).toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+                        byte[] lowerAuthor = ((String) row[2]).toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+                        int recordLength = 16 + title.length + author.length + lowerTitle.length + lowerAuthor.length;
+                        // Файл целиком (данные и все индексы) должен отображаться в память одним буфером
+                        if (HEADER_SIZE + dataLength + recordLength + (4L * Long.BYTES + Integer.BYTES) * (count + 1) > Integer.MAX_VALUE) {
+                            throw new IOException("Каталог слишком велик для снимка");
+                        }
+                        int offset = (int) dataLength;
+                        ids[count] = entry(id, offset);
+                        titles[count] = entry(hash(title, 0, title.length), offset);
+                        authors[count] = entry(hash(author, 0, author.length), offset);
+                        years[count] = entry(year, offset);
+                        lowerTitles[count] = lowerTitle;
+                        offsets[count] = offset;
+                        count++;
+
+                        out.writeInt(id);
+                        out.writeInt(year);
+                        for (byte[] field : new byte[][]{title, author, lowerTitle, lowerAuthor}) {
+                            out.writeShort(field.length);
+                            out.write(field);
+                        }
+                        dataLength += recordLength;
+                    }
+                    if (rows.size() < EXPORT_PAGE_SIZE) {
+                        break;
+                    }
+                    after = (Integer) rows.get(rows.size() - 1)[0];
+                }
+
+                // Индексы по id уже упорядочены (таблица читалась по возрастанию id)
+                for (long[] index : new long[][]{ids, titles, authors, years}) {
+                    Arrays.sort(index, 0, count);
+                    for (int i = 0; i < count; i++) {
+                        out.writeLong(index[i]);
+                    }
+                }
+
+                // Раздел префиксов: смещения книг по возрастанию байтов названия в нижнем регистре
+                byte[][] keys = lowerTitles;
+                Integer[] order = new Integer[count];
+                for (int i = 0; i < count; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+                for (Integer i : order) {
+                    out.writeInt(offsets[i]);
+                }
+            }
+
+            long indexSize = (long) count * Long.BYTES;
+            long idIndex = HEADER_SIZE + dataLength;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC).putInt(VERSION).putInt(count).putLong(createdMillis)
+                    .putLong(HEADER_SIZE).putLong(dataLength)
+                    .putLong(idIndex).putLong(idIndex + indexSize).putLong(idIndex + 2 * indexSize).putLong(idIndex + 3 * indexSize)
+                    .putLong(idIndex + 4 * indexSize)
+                    .flip();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            completed = true;
+        } finally {
+            if (!completed) {
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        // Удаление прежних снимков и временных файлов прерванных записей
+        for (Path old : generations(file)) {
+            if (generation(file, old) < createdMillis) {
+                try {
+                    Files.deleteIfExists(old);
+                } catch (IOException ex) {
+                    // Снимок еще открыт (Windows) - будет удален при следующей записи
+                }
+            }
+        }
+        return count;
+    }
+
+    // Файлы снимков и временные файлы с базовым именем file
+    private static List<Path> generations(Path file) throws IOException {
+        List<Path> files = new ArrayList<>();
+        Path dir = file.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, file.getFileName() + ".*")) {
+            for (Path candidate : stream) {
+                String suffix = candidate.getFileName().toString().substring(file.getFileName().toString().length() + 1);
+                if (suffix.endsWith(".tmp")) {
+                    suffix = suffix.substring(0, suffix.length() - 4);
+                }
+                if (!suffix.isEmpty() && suffix.length() <= 18 && suffix.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                    files.add(candidate);
+                }
+            }
+        }
+        return files;
+    }
+
+    // Время создания снимка (или снимка, который пишется во временный файл) по имени файла
+    private static long generation(Path file, Path candidate) {
+        String suffix = candidate.getFileName().toString().substring(file.getFileName().toString().length() + 1);
+        return Long.parseLong(suffix.endsWith(".tmp") ? suffix.substring(0, suffix.length() - 4) : suffix);
+    }
+
+    // Время создания снимка
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    // Число книг в снимке
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public List<Object[]> findByTitle(String title) {
+        return findByString(titleIndex, title);
+    }
+
+    @Override
+    public List<Object[]> findByAuthor(String author) {
+        return findByString(authorIndex, author);
+    }
+
+    @Override
+    public List<Object[]> findByYear(int year) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = lowerBound(yearIndex, year); i < count && key(yearIndex, i) == year; i++) {
+            rows.add(readBook(offset(yearIndex, i)));
+        }
+        return rows;
+    }
+
+    @Override
+    public List<Object[]> findBooks(String title, String author, Integer year, String sort, int limit) {
+        int sortColumn = List.of("id", "title", "author", "year").indexOf(sort);
+        if (sortColumn < 0) {
+            throw new IllegalArgumentException("Некорректное поле сортировки: " + sort);
+        }
+        // Кандидаты берутся из индекса заданного поля, остальные условия проверяются по найденным книгам
+        List<Object[]> candidates;
+        if (title != null) {
+            candidates = findByTitle(title);
+        } else if (author != null) {
+            candidates = findByAuthor(author);
+        } else if (year != null) {
+            candidates = findByYear(year);
+        } else {
+            candidates = new ArrayList<>();
+            viewAll(candidates::add);
+        }
+        List<Object[]> rows = new ArrayList<>();
+        for (Object[] row : candidates) {
+            if ((author == null || author.equals(row[2])) && (year == null || year.equals(row[3]))) {
+                rows.add(row);
+            }
+        }
+        @SuppressWarnings("unchecked")
+        Comparator<Object[]> order = Comparator.comparing(row -> (Comparable<Object>) row[sortColumn]);
+        rows.sort(order.thenComparing(row -> (Integer) row[0]));
+        return rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
+    }
+
+    @Override
+    public List<Object[]> search(String query, int limit) {
+        // Упрощенный аналог SearchBooks (как в InMemoryBookRepository): сначала совпадения по началу названия,
+        // затем по подстроке названия или автора. Сравниваются байты в файле, строки создаются только для найденных книг.
+        byte[] q = query.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        List<Object[]> rows = new ArrayList<>();
+        // Названия с началом q идут в разделе префиксов подряд
+        for (int i = prefixLowerBound(q); i < count && rows.size() < limit; i++) {
+            int offset = buffer.getInt(prefixIndex + i * Integer.BYTES);
+            if (!startsWith(lowerTitlePosition(offset), q)) {
+                break;
+            }
+            rows.add(readBook(offset));
+        }
+        // Совпадения по подстроке - просмотром полей в нижнем регистре
+        for (int i = 0; i < count && rows.size() < limit; i++) {
+            int offset = offset(idIndex, i);
+            int lowerTitle = lowerTitlePosition(offset);
+            if (startsWith(lowerTitle, q)) {
+                continue; // Уже найдено по началу названия
+            }
+            int lowerAuthor = lowerTitle + 2 + unsignedShort(lowerTitle);
+            if (containsBytes(lowerTitle, q) || containsBytes(lowerAuthor, q)) {
+                rows.add(readBook(offset));
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public List<Object[]> viewPage(int afterId, int limit) {
+        List<Object[]> rows = new ArrayList<>(Math.min(limit, count));
+        int start = afterId == Integer.MAX_VALUE ? count : lowerBound(idIndex, afterId + 1);
+        for (int i = start; i < count && rows.size() < limit; i++) {
+            rows.add(readBook(offset(idIndex, i)));
+        }
+        return rows;
+    }
+
+    @Override
+    public long viewAll(Consumer<Object[]> consumer) {
+        for (int i = 0; i < count; i++) {
+            consumer.accept(readBook(offset(idIndex, i)));
+        }
+        return count;
+    }
+
+    @Override
+    public void addBook(String title, String author, int year) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBook(int id, String title, String author, int year) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBooks(List<Object[]> books) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteByTitle(String title) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteByIds(int[] ids) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void clear() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public String toString() {
+        return "Снимок каталога " + file + ": книг=" + count + ", создан " + new java.util.Date(createdMillis);
+    }
+
+    private SQLException readOnly() {
+        return new SQLException("Снимок каталога доступен только для чтения");
+    }
+
+    // Поиск по точному совпадению названия или автора (index - titleIndex или authorIndex)
+    private List<Object[]> findByString(int index, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(bytes, 0, bytes.length);
+        boolean byAuthor = index == authorIndex;
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = lowerBound(index, hash); i < count && key(index, i) == hash; i++) {
+            int record = dataOffset + offset(index, i);
+            int field = record + 8; // Название идет после id и года, автор - после названия
+            if (byAuthor) {
+                field += 2 + unsignedShort(field);
+            }
+            if (equalsBytes(field, bytes)) {
+                rows.add(readBook(offset(index, i)));
+            }
+        }
+        return rows;
+    }
+
+    // Первый элемент индекса с ключом не меньше key
+    private int lowerBound(int index, int key) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key(index, mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Первый элемент раздела префиксов, название которого (в нижнем регистре) не меньше value
+    private int prefixLowerBound(byte[] value) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareBytes(lowerTitlePosition(buffer.getInt(prefixIndex + mid * Integer.BYTES)), value) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Позиция названия в нижнем регистре (длина и байты) у книги со смещением offset
+    private int lowerTitlePosition(int offset) {
+        int position = dataOffset + offset + 8;
+        position += 2 + unsignedShort(position); // Название
+        position += 2 + unsignedShort(position); // Автор
+        return position;
+    }
+
+    // Сравнение строки в файле с байтами value без учета знака байтов (порядок UTF-8 совпадает с порядком символов)
+    private int compareBytes(int position, byte[] value) {
+        int length = unsignedShort(position);
+        int common = Math.min(length, value.length);
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(position + 2 + i) & 0xFF) - (value[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - value.length;
+    }
+
+    private boolean startsWith(int position, byte[] prefix) {
+        if (unsignedShort(position) < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(position + 2 + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean containsBytes(int position, byte[] value) {
+        int last = unsignedShort(position) - value.length;
+        for (int start = 0; start <= last; start++) {
+            int i = 0;
+            while (i < value.length && buffer.get(position + 2 + start + i) == value[i]) {
+                i++;
+            }
+            if (i == value.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int key(int index, int i) {
+        return (int) (buffer.getLong(index + i * Long.BYTES) >> 32);
+    }
+
+    private int offset(int index, int i) {
+        return (int) buffer.getLong(index + i * Long.BYTES);
+    }
+
+    private int unsignedShort(int position) {
+        return buffer.getShort(position) & 0xFFFF;
+    }
+
+    // Сравнение строки в файле (длина и байты по смещению position) с байтами value
+    private boolean equalsBytes(int position, byte[] value) {
+        if (unsignedShort(position) != value.length) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (buffer.get(position + 2 + i) != value[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Чтение книги по смещению в разделе данных
+    private Object[] readBook(int offset) {
+        int position = dataOffset + offset;
+        int id = buffer.getInt(position);
+        int year = buffer.getInt(position + 4);
+        int titleLength = unsignedShort(position + 8);
+        String title = readString(position + 10, titleLength);
+        int authorPosition = position + 10 + titleLength;
+        String author = readString(authorPosition + 2, unsignedShort(authorPosition));
+        return new Object[]{id, title, author, year};
+    }
+
+    private String readString(int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long entry(int key, int offset) {
+        return ((long) key << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    // 32-битный хэш FNV-1a
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            hash ^= bytes[i] & 0xFF;
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+}
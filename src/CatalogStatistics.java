@@ -0,0 +1,61 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Статистика каталога: итоги, число книг по авторам и по годам издания.
+// Все числа считает сервер по таблицам агрегатов (CatalogSummary, BooksPerAuthor, BooksPerYear),
+// клиенту передаются только итоговые строки, а не сами книги.
+public class CatalogStatistics {
+    public long books;
+    public long authors;
+    public long years;
+    // Первый и последний год издания (null - каталог пуст)
+    public Integer minYear;
+    public Integer maxYear;
+    // Авторы с наибольшим числом книг: массивы {author, books}
+    public final List<Object[]> perAuthor = new ArrayList<>();
+    // Число книг по годам издания: массивы {year, books}
+    public final List<Object[]> perYear = new ArrayList<>();
+
+    // Метод для загрузки статистики; topAuthors - сколько авторов с наибольшим числом книг загрузить
+    public static CatalogStatistics load(Connection conn, DatabaseExecutor.OperationContext ctx,
+                                         String role, int topAuthors) throws SQLException {
+        CatalogStatistics stats = new CatalogStatistics();
+        Metrics.Timer timer = Metrics.timer("CatalogStatistics", role);
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            try (PreparedStatement stmt = ctx.track(conn.prepareStatement("SELECT * FROM CatalogSummary()"));
+                 ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    stats.books = rs.getLong("books");
+                    stats.authors = rs.getLong("authors");
+                    stats.years = rs.getLong("years");
+                    stats.minYear = (Integer) rs.getObject("min_year");
+                    stats.maxYear = (Integer) rs.getObject("max_year");
+                }
+            }
+            try (PreparedStatement stmt = ctx.track(conn.prepareStatement("SELECT * FROM BooksPerAuthor(?)"))) {
+                stmt.setInt(1, topAuthors);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        stats.perAuthor.add(new Object[]{rs.getString("author"), rs.getLong("books")});
+                    }
+                }
+            }
+            try (PreparedStatement stmt = ctx.track(conn.prepareStatement("SELECT * FROM BooksPerYear()"));
+                 ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    stats.perYear.add(new Object[]{rs.getInt("year"), rs.getLong("books")});
+                }
+            }
+            success = true;
+            return stats;
+        } finally {
+            timer.record(start, success);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.sql.SQLException;
+
+// Окно со статистикой каталога: итоги, число книг по авторам и по годам издания.
+// Данные загружаются с сервера при открытии окна и по кнопке "Обновить".
+public class CatalogStatisticsDialog extends JDialog {
+    // Загрузчик статистики (выполняется вне потока EDT)
+    public interface Loader {
+        CatalogStatistics load(DatabaseExecutor.OperationContext context) throws SQLException;
+    }
+
+    private final Loader loader;
+    private final int timeoutSeconds;
+    private final JLabel summary = new JLabel(" ");
+    private final DefaultTableModel authorModel = readOnlyModel("Автор", "Книг");
+    private final DefaultTableModel yearModel = readOnlyModel("Год", "Книг");
+
+    public CatalogStatisticsDialog(Window owner, Loader loader, int timeoutSeconds) {
+        super(owner, "Статистика каталога");
+        this.loader = loader;
+        this.timeoutSeconds = timeoutSeconds;
+        setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("По авторам", new JScrollPane(new JTable(authorModel)));
+        tabs.addTab("По годам", new JScrollPane(new JTable(yearModel)));
+
+        summary.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        JButton refreshButton = new JButton("Обновить");
+        refreshButton.addActionListener(e -> refresh());
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(refreshButton);
+
+        add(summary, BorderLayout.NORTH);
+        add(tabs, BorderLayout.CENTER);
+        add(buttons, BorderLayout.SOUTH);
+        setSize(450, 450);
+        setLocationRelativeTo(owner);
+
+        refresh();
+    }
+
+    // Загрузка статистики с сервера
+    private void refresh() {
+        DatabaseExecutor.submit(this, "Загрузка статистики", timeoutSeconds, loader::load, this::showStatistics,
+                ex -> JOptionPane.showMessageDialog(this, "Ошибка при загрузке статистики: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
+    }
+
+    private void showStatistics(CatalogStatistics stats) {
+        String years = stats.minYear != null ? ", годы издания: " + stats.minYear + " - " + stats.maxYear : "";
+        summary.setText("Книг: " + stats.books + ", авторов: " + stats.authors + ", разных лет: " + stats.years + years);
+        authorModel.setRowCount(0);
+        for (Object[] row : stats.perAuthor) {
+            authorModel.addRow(row);
+        }
+        yearModel.setRowCount(0);
+        for (Object[] row : stats.perYear) {
+            yearModel.addRow(row);
+        }
+    }
+
+    private static DefaultTableModel readOnlyModel(String... columns) {
+        return new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+    }
+}
@@ -0,0 +1,477 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Пул соединений с базой данных для одного пользователя (роли).
+// Соединения создаются через DriverManager один раз и затем переиспользуются:
+// вызов close() у выданного соединения возвращает его в пул, а не закрывает.
+// Подготовленные запросы каждого соединения также переиспользуются (см. StatementCache).
+public class ConnectionPool implements AutoCloseable {
+    private final String name;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final Settings settings;
+
+    // Блокировка состояния пула. Используется ReentrantLock, а не synchronized/wait:
+    // ожидающие соединения виртуальные потоки тогда не занимают потоки-носители.
+    private final ReentrantLock lock = new ReentrantLock();
+    // Сигнал о том, что появилось свободное соединение или место под новое
+    private final Condition available = lock.newCondition();
+
+    // Свободные соединения (в начале очереди - последние возвращенные)
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    // Общее число физических соединений (свободные + выданные)
+    private int total;
+    private boolean closed;
+    // Кэши подготовленных запросов физических соединений
+    private final Map<Connection, StatementCache> statementCaches = new IdentityHashMap<>();
+
+    // Счетчики для статистики пула
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong returned = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong invalidated = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+    private final AtomicLong statementHits = new AtomicLong();
+    private final AtomicLong statementMisses = new AtomicLong();
+
+    private final ScheduledExecutorService evictor;
+
+    // Настройки пула
+    public static class Settings {
+        final int minSize;
+        final int maxSize;
+        final long maxWaitMillis;
+        final long idleTimeoutMillis;
+        final int validationTimeoutSeconds;
+        // Число подготовленных запросов, хранимых для каждого соединения (0 - без кэша)
+        final int statementCacheSize;
+
+        public Settings(int minSize, int maxSize, long maxWaitMillis, long idleTimeoutMillis, int validationTimeoutSeconds,
+                        int statementCacheSize) {
+            if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+                throw new IllegalArgumentException("Некорректный размер пула: min=" + minSize + ", max=" + maxSize);
+            }
+            this.minSize = minSize;
+            this.maxSize = maxSize;
+            this.maxWaitMillis = maxWaitMillis;
+            this.idleTimeoutMillis = idleTimeoutMillis;
+            this.validationTimeoutSeconds = validationTimeoutSeconds;
+            this.statementCacheSize = Math.max(0, statementCacheSize);
+        }
+    }
+
+    // Снимок статистики пула
+    public static class Stats {
+        public final String name;
+        public final int total;
+        public final int idle;
+        public final int active;
+        public final long created;
+        public final long borrowed;
+        public final long returned;
+        public final long evicted;
+        public final long invalidated;
+        public final long waitTimeouts;
+        public final long statementHits;
+        public final long statementMisses;
+
+        Stats(String name, int total, int idle, long created, long borrowed, long returned,
+              long evicted, long invalidated, long waitTimeouts, long statementHits, long statementMisses) {
+            this.name = name;
+            this.total = total;
+            this.idle = idle;
+            this.active = total - idle;
+            this.created = created;
+            this.borrowed = borrowed;
+            this.returned = returned;
+            this.evicted = evicted;
+            this.invalidated = invalidated;
+            this.waitTimeouts = waitTimeouts;
+            this.statementHits = statementHits;
+            this.statementMisses = statementMisses;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": всего=" + total + ", активных=" + active + ", свободных=" + idle
+                    + ", создано=" + created + ", выдано=" + borrowed + ", возвращено=" + returned
+                    + ", вытеснено=" + evicted + ", отбраковано=" + invalidated
+                    + ", таймаутов ожидания=" + waitTimeouts
+                    + ", запросов из кэша=" + statementHits + ", подготовлено запросов=" + statementMisses;
+        }
+    }
+
+    // Свободное соединение вместе со временем его возврата в пул
+    private static class IdleConnection {
+        final Connection connection;
+        final long idleSince;
+
+        IdleConnection(Connection connection, long idleSince) {
+            this.connection = connection;
+            this.idleSince = idleSince;
+        }
+    }
+
+    public ConnectionPool(String name, String url, String user, String password, Settings settings) {
+        this.name = name;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.settings = settings;
+
+        // Фоновый поток для вытеснения простаивающих соединений
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pool-evictor-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, settings.idleTimeoutMillis / 2);
+        evictor.execute(this::fillToMinimum);
+        evictor.scheduleWithFixedDelay(() -> {
+            evictIdle();
+            fillToMinimum();
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Метод для получения соединения из пула (время ожидания учитывается в метриках)
+    public Connection getConnection() throws SQLException {
+        Metrics.Timer timer = Metrics.timer(Metrics.CONNECTION_ACQUIRE, name);
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            Connection connection = acquire();
+            success = true;
+            return connection;
+        } finally {
+            timer.record(start, success);
+        }
+    }
+
+    private Connection acquire() throws SQLException {
+        long deadline = System.currentTimeMillis() + settings.maxWaitMillis;
+        while (true) {
+            Connection physical = null;
+            boolean create = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) {
+                        throw new SQLException("Пул соединений " + name + " закрыт");
+                    }
+                    IdleConnection candidate = idle.pollFirst();
+                    if (candidate != null) {
+                        physical = candidate.connection;
+                        break;
+                    }
+                    if (total < settings.maxSize) {
+                        total++; // Резервируем место под новое соединение
+                        create = true;
+                        break;
+                    }
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        waitTimeouts.incrementAndGet();
+                        throw new SQLException("Превышено время ожидания свободного соединения в пуле " + name
+                                + " (" + settings.maxWaitMillis + " мс)");
+                    }
+                    try {
+                        available.await(remaining, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Ожидание соединения прервано", ex);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                try {
+                    physical = DriverManager.getConnection(url, user, password);
+                    created.incrementAndGet();
+                } catch (SQLException ex) {
+                    release();
+                    throw ex;
+                }
+            } else if (!isValid(physical)) {
+                // Соединение разорвано сервером - закрываем его и пробуем снова
+                invalidated.incrementAndGet();
+                closeQuietly(physical);
+                release();
+                continue;
+            }
+
+            borrowed.incrementAndGet();
+            return wrap(physical);
+        }
+    }
+
+    // Метод для получения статистики пула
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats(name, total, idle.size(), created.get(), borrowed.get(), returned.get(),
+                    evicted.get(), invalidated.get(), waitTimeouts.get(), statementHits.get(), statementMisses.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Метод для закрытия пула и всех свободных соединений.
+    // Выданные соединения закрываются при возврате.
+    @Override
+    public void close() {
+        evictor.shutdownNow();
+        Deque<IdleConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayDeque<>(idle);
+            total -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (IdleConnection c : toClose) {
+            closeQuietly(c.connection);
+        }
+    }
+
+    // Проверка соединения перед выдачей
+    private boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(settings.validationTimeoutSeconds);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    // Возврат физического соединения в пул.
+    // originalIsolation - уровень изоляции до его изменения пользователем (null - не менялся),
+    // readOnlyChanged - вызывался ли setReadOnly.
+    private void giveBack(Connection physical, Integer originalIsolation, boolean readOnlyChanged) {
+        returned.incrementAndGet();
+        boolean healthy;
+        try {
+            healthy = !physical.isClosed();
+            if (healthy) {
+                // Незавершенная транзакция и измененные настройки не должны достаться следующему пользователю
+                if (!physical.getAutoCommit()) {
+                    physical.rollback();
+                    physical.setAutoCommit(true);
+                }
+                if (readOnlyChanged) {
+                    physical.setReadOnly(false);
+                }
+                if (originalIsolation != null) {
+                    physical.setTransactionIsolation(originalIsolation);
+                }
+            }
+        } catch (SQLException ex) {
+            healthy = false;
+        }
+
+        lock.lock();
+        try {
+            if (healthy && !closed) {
+                idle.addFirst(new IdleConnection(physical, System.currentTimeMillis()));
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        closeQuietly(physical);
+        release();
+    }
+
+    // Освобождение места в пуле после закрытия физического соединения
+    private void release() {
+        lock.lock();
+        try {
+            total--;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Вытеснение соединений, простаивающих дольше idleTimeout (но не ниже minSize)
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        Deque<Connection> toClose = new ArrayDeque<>();
+        lock.lock();
+        try {
+            Iterator<IdleConnection> it = idle.descendingIterator(); // Сначала самые старые
+            while (it.hasNext() && total - toClose.size() > settings.minSize) {
+                IdleConnection c = it.next();
+                if (now - c.idleSince < settings.idleTimeoutMillis) {
+                    break;
+                }
+                it.remove();
+                toClose.add(c.connection);
+            }
+            total -= toClose.size();
+            if (!toClose.isEmpty()) {
+                available.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Connection c : toClose) {
+            closeQuietly(c);
+            evicted.incrementAndGet();
+        }
+    }
+
+    // Создание соединений в фоне, пока их меньше minSize
+    private void fillToMinimum() {
+        while (true) {
+            lock.lock();
+            try {
+                if (closed || total >= settings.minSize) {
+                    return;
+                }
+                total++;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                Connection physical = DriverManager.getConnection(url, user, password);
+                created.incrementAndGet();
+                lock.lock();
+                try {
+                    if (!closed) {
+                        idle.addLast(new IdleConnection(physical, System.currentTimeMillis()));
+                        available.signal();
+                        continue;
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                closeQuietly(physical);
+                release();
+                return;
+            } catch (SQLException ex) {
+                // Сервер недоступен - повторим при следующем запуске задачи
+                release();
+                return;
+            }
+        }
+    }
+
+    // Метод для получения кэша подготовленных запросов соединения (null - кэш отключен)
+    private StatementCache statementCache(Connection physical) {
+        if (settings.statementCacheSize == 0) {
+            return null;
+        }
+        lock.lock();
+        try {
+            return statementCaches.computeIfAbsent(physical,
+                    c -> new StatementCache(c, settings.statementCacheSize, statementHits, statementMisses));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Обертка, которая при close() возвращает соединение в пул,
+    // а prepareStatement(sql) и prepareCall(sql) берет из кэша запросов соединения
+    private Connection wrap(Connection physical) {
+        InvocationHandler handler = new InvocationHandler() {
+            private boolean released;
+            // Настройки соединения, которые нужно восстановить при возврате в пул
+            private Integer originalIsolation;
+            private boolean readOnlyChanged;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (!released) {
+                            released = true;
+                            giveBack(physical, originalIsolation, readOnlyChanged);
+                        }
+                        return null;
+                    case "isClosed":
+                        return released || physical.isClosed();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Pooled[" + name + "] " + physical;
+                    case "prepareStatement":
+                    case "prepareCall":
+                        StatementCache cache = statementCache(physical);
+                        if (!released && cache != null && args.length == 1) {
+                            return cache.prepare((String) args[0], method.getName().equals("prepareCall"), (Connection) proxy);
+                        }
+                        // Запросы с дополнительными параметрами (тип курсора, ключи и т.п.) не кэшируются
+                        return delegate(method, args);
+                    case "setTransactionIsolation":
+                        if (!released && originalIsolation == null) {
+                            originalIsolation = physical.getTransactionIsolation();
+                        }
+                        return delegate(method, args);
+                    case "setReadOnly":
+                        readOnlyChanged = true;
+                        return delegate(method, args);
+                    default:
+                        return delegate(method, args);
+                }
+            }
+
+            private Object delegate(Method method, Object[] args) throws Throwable {
+                if (released) {
+                    throw new SQLException("Соединение уже возвращено в пул");
+                }
+                try {
+                    return method.invoke(physical, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                ConnectionPool.class.getClassLoader(), new Class<?>[]{Connection.class}, handler);
+    }
+
+    // Закрытие физического соединения вместе с его кэшем запросов
+    private void closeQuietly(Connection connection) {
+        StatementCache cache;
+        lock.lock();
+        try {
+            cache = statementCaches.remove(connection);
+        } finally {
+            lock.unlock();
+        }
+        if (cache != null) {
+            cache.close();
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Соединение уже недоступно
+        }
+    }
+}
@@ -0,0 +1,260 @@
+import javax.swing.*;
+import java.awt.*;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+// Выполнение операций с базой данных вне потока обработки событий Swing (EDT).
+// Каждая операция запускается в отдельном виртуальном потоке, результат передается обратно в EDT.
+// Пока операция выполняется, показывается окно с индикатором и кнопкой отмены.
+public class DatabaseExecutor {
+    // Задержка перед показом окна прогресса, чтобы быстрые операции не мигали окнами
+    private static final int PROGRESS_DELAY_MILLIS = 300;
+
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Поток, отменяющий операции по истечении таймаута
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "db-operation-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Операция с базой данных
+    public interface Operation<T> {
+        T run(OperationContext context) throws Exception;
+    }
+
+    // Контекст операции: через него регистрируются запросы, которые нужно прерывать при отмене
+    public static class OperationContext {
+        private final int timeoutSeconds;
+        // Открытые запросы операции (закрытые удаляются при регистрации следующих)
+        private final List<Statement> statements = new CopyOnWriteArrayList<>();
+        // Регистрировался ли хотя бы один запрос (после этого поток операции при отмене не прерывается)
+        private volatile boolean tracked;
+        // Действия для отмены работы, которая не является запросом JDBC (например, команды COPY)
+        private final List<Runnable> cancelActions = new CopyOnWriteArrayList<>();
+        private volatile boolean cancelled;
+        private volatile boolean timedOut;
+        private volatile Consumer<String> statusListener;
+
+        OperationContext(int timeoutSeconds) {
+            this.timeoutSeconds = timeoutSeconds;
+        }
+
+        // Регистрация запроса: ему назначается таймаут, а при отмене операции вызывается Statement.cancel()
+        public <S extends Statement> S track(S statement) throws SQLException {
+            if (cancelled) {
+                statement.close();
+                throw new SQLException("Операция отменена");
+            }
+            if (timeoutSeconds > 0) {
+                statement.setQueryTimeout(timeoutSeconds);
+            }
+            // Закрытые запросы больше не нужны для отмены: длинные операции (импорт по частям,
+            // постраничная выгрузка) не накапливают их в списке
+            statements.removeIf(OperationContext::isClosed);
+            statements.add(statement);
+            tracked = true;
+            // Операцию могли отменить, пока запрос регистрировался: cancel() мог уже пройти по списку
+            // и не увидеть этот запрос, поэтому проверяем флаг еще раз после добавления
+            if (cancelled) {
+                statements.remove(statement);
+                statement.close();
+                throw new SQLException("Операция отменена");
+            }
+            return statement;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        // Регистрация действия, которое выполняется при отмене операции; удаляется методом untrack
+        public void onCancel(Runnable action) throws SQLException {
+            cancelActions.add(action);
+            if (cancelled) {
+                cancelActions.remove(action);
+                throw new SQLException("Операция отменена");
+            }
+        }
+
+        public void untrack(Runnable action) {
+            cancelActions.remove(action);
+        }
+
+        // Зарегистрирован ли хотя бы один запрос или действие отмены
+        boolean hasStatements() {
+            return tracked || !cancelActions.isEmpty();
+        }
+
+        private static boolean isClosed(Statement statement) {
+            try {
+                return statement.isClosed();
+            } catch (SQLException ex) {
+                return true;
+            }
+        }
+
+        // Обновление текста состояния в окне прогресса (можно вызывать из любого потока)
+        public void setStatus(String text) {
+            Consumer<String> listener = statusListener;
+            if (listener != null) {
+                SwingUtilities.invokeLater(() -> listener.accept(text));
+            }
+        }
+
+        void cancel(boolean byTimeout) {
+            timedOut = byTimeout;
+            cancelled = true;
+            for (Statement statement : statements) {
+                try {
+                    statement.cancel();
+                } catch (SQLException ignored) {
+                    // Запрос уже завершен или соединение закрыто
+                }
+            }
+            for (Runnable action : cancelActions) {
+                action.run();
+            }
+        }
+    }
+
+    // Описатель запущенной операции
+    public static class Handle {
+        private final OperationContext context;
+        private volatile Future<?> future;
+
+        Handle(OperationContext context) {
+            this.context = context;
+        }
+
+        // Отмена операции: прерываем выполняющийся запрос через Statement.cancel().
+        // Поток прерывается только если запросов еще нет (например, операция ждет соединения из пула):
+        // прерывание виртуального потока во время чтения из сокета закрыло бы соединение,
+        // и пул терял бы физическое соединение при каждой отмене.
+        public void cancel() {
+            context.cancel(false);
+            Future<?> f = future;
+            if (f != null && !context.hasStatements()) {
+                f.cancel(true);
+            }
+        }
+
+        public boolean isCancelled() {
+            return context.isCancelled();
+        }
+    }
+
+    // Метод для запуска операции.
+    // title - заголовок окна прогресса (null - операция выполняется без окна),
+    // timeoutSeconds - максимальное время выполнения (0 - без ограничения).
+    // Обработчики onSuccess и onError вызываются в потоке EDT; отмененная пользователем операция их не вызывает.
+    public static <T> Handle submit(Component parent, String title, int timeoutSeconds,
+                                    Operation<T> operation, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        OperationContext context = new OperationContext(timeoutSeconds);
+        Handle handle = new Handle(context);
+
+        // Окно прогресса показываем только если операция выполняется дольше PROGRESS_DELAY_MILLIS
+        JDialog progress = title != null ? createProgressDialog(parent, title, handle, context) : null;
+        Timer showTimer = null;
+        if (progress != null) {
+            showTimer = new Timer(PROGRESS_DELAY_MILLIS, e -> {
+                if (!handle.isCancelled()) {
+                    progress.setVisible(true);
+                }
+            });
+            showTimer.setRepeats(false);
+            showTimer.start();
+        }
+        Timer finalShowTimer = showTimer;
+
+        ScheduledFuture<?> watchdog = timeoutSeconds > 0
+                ? WATCHDOG.schedule(() -> context.cancel(true), timeoutSeconds, TimeUnit.SECONDS)
+                : null;
+
+        handle.future = EXECUTOR.submit(() -> {
+            T result = null;
+            Exception error = null;
+            try {
+                result = operation.run(context);
+            } catch (Exception ex) {
+                error = ex;
+            } finally {
+                if (watchdog != null) {
+                    watchdog.cancel(false);
+                }
+            }
+
+            T finalResult = result;
+            Exception finalError = context.timedOut
+                    ? new TimeoutException("Превышено время выполнения операции (" + timeoutSeconds + " с)")
+                    : error;
+            SwingUtilities.invokeLater(() -> {
+                if (finalShowTimer != null) {
+                    finalShowTimer.stop();
+                }
+                if (progress != null) {
+                    progress.dispose();
+                }
+                if (context.isCancelled() && !context.timedOut) {
+                    return; // Пользователь сам отменил операцию
+                }
+                if (finalError != null) {
+                    onError.accept(finalError);
+                } else {
+                    onSuccess.accept(finalResult);
+                }
+            });
+        });
+        return handle;
+    }
+
+    // Окно с индикатором выполнения и кнопкой отмены
+    private static JDialog createProgressDialog(Component parent, String title, Handle handle, OperationContext context) {
+        Window owner = parent != null ? SwingUtilities.getWindowAncestor(parent) : null;
+        JDialog dialog = new JDialog(owner, title);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+
+        JProgressBar bar = new JProgressBar();
+        bar.setIndeterminate(true);
+
+        JButton cancelButton = new JButton("Отмена");
+        cancelButton.addActionListener(e -> {
+            handle.cancel();
+            dialog.dispose();
+        });
+
+        // Строка состояния, которую операция может обновлять через OperationContext.setStatus
+        JLabel status = new JLabel(" ");
+        context.statusListener = text -> {
+            status.setText(text);
+            if (dialog.getWidth() < dialog.getPreferredSize().width) {
+                dialog.pack();
+            }
+        };
+
+        JPanel center = new JPanel(new BorderLayout(0, 4));
+        center.add(bar, BorderLayout.CENTER);
+        center.add(status, BorderLayout.SOUTH);
+
+        JPanel content = new JPanel(new BorderLayout(0, 8));
+        content.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        content.add(new JLabel("Выполняется: " + title), BorderLayout.NORTH);
+        content.add(center, BorderLayout.CENTER);
+        content.add(cancelButton, BorderLayout.SOUTH);
+        dialog.add(content);
+        dialog.pack();
+        dialog.setLocationRelativeTo(parent);
+        return dialog;
+    }
+}
@@ -0,0 +1,271 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+// Каталог книг в памяти процесса.
+// Повторяет поведение хранимых процедур из samples.sql и индексы из migrations
+// (первичный ключ по id и индексы по title, author, year); используется в бенчмарках вместо PostgreSQL.
+public class InMemoryBookRepository implements BookRepository {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<Integer, Object[]> byId = new TreeMap<>();
+    private final Map<String, Set<Integer>> byTitle = new HashMap<>();
+    private final Map<String, Set<Integer>> byAuthor = new HashMap<>();
+    private final Map<Integer, Set<Integer>> byYear = new HashMap<>();
+    private int nextId = 1;
+
+    @Override
+    public void addBook(String title, String author, int year) {
+        lock.writeLock().lock();
+        try {
+            insert(new Object[]{nextId++, title, author, year});
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Object[]> findByTitle(String title) {
+        return find(byTitle, title);
+    }
+
+    @Override
+    public List<Object[]> findByAuthor(String author) {
+        return find(byAuthor, author);
+    }
+
+    @Override
+    public List<Object[]> findByYear(int year) {
+        return find(byYear, year);
+    }
+
+    @Override
+    public List<Object[]> findBooks(String title, String author, Integer year, String sort, int limit) {
+        int sortColumn = List.of("id", "title", "author", "year").indexOf(sort);
+        if (sortColumn < 0) {
+            throw new IllegalArgumentException("Некорректное поле сортировки: " + sort);
+        }
+        lock.readLock().lock();
+        List<Object[]> rows = new ArrayList<>();
+        try {
+            // Перебираются только книги из самого короткого из подходящих индексов
+            Set<Integer> candidates = null;
+            if (title != null) {
+                candidates = smaller(candidates, byTitle.getOrDefault(title, Set.of()));
+            }
+            if (author != null) {
+                candidates = smaller(candidates, byAuthor.getOrDefault(author, Set.of()));
+            }
+            if (year != null) {
+                candidates = smaller(candidates, byYear.getOrDefault(year, Set.of()));
+            }
+            for (Object[] row : candidates != null ? ids(candidates) : byId.values()) {
+                if ((title == null || title.equals(row[1])) && (author == null || author.equals(row[2]))
+                        && (year == null || year.equals(row[3]))) {
+                    rows.add(row.clone());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        @SuppressWarnings("unchecked")
+        Comparator<Object[]> order = Comparator.comparing(row -> (Comparable<Object>) row[sortColumn]);
+        rows.sort(order.thenComparing(row -> (Integer) row[0]));
+        return rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
+    }
+
+    @Override
+    public List<Object[]> search(String query, int limit) {
+        // Упрощенный аналог SearchBooks: сначала совпадения по началу названия, затем по подстроке
+        String q = query.toLowerCase(Locale.ROOT);
+        List<Object[]> prefix = new ArrayList<>();
+        List<Object[]> contains = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Object[] row : byId.values()) {
+                String title = ((String) row[1]).toLowerCase(Locale.ROOT);
+                String author = ((String) row[2]).toLowerCase(Locale.ROOT);
+                if (title.startsWith(q)) {
+                    prefix.add(row.clone());
+                    if (prefix.size() == limit) {
+                        break;
+                    }
+                } else if (contains.size() < limit && (title.contains(q) || author.contains(q))) {
+                    contains.add(row.clone());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; prefix.size() < limit && i < contains.size(); i++) {
+            prefix.add(contains.get(i));
+        }
+        return prefix;
+    }
+
+    @Override
+    public void updateBook(int id, String title, String author, int year) {
+        lock.writeLock().lock();
+        try {
+            Object[] old = byId.get(id);
+            if (old != null) {
+                remove(old);
+                insert(new Object[]{id, title, author, year});
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteByTitle(String title) {
+        lock.writeLock().lock();
+        try {
+            Set<Integer> ids = byTitle.get(title);
+            if (ids != null) {
+                for (Integer id : new ArrayList<>(ids)) {
+                    remove(byId.get(id));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updateBooks(List<Object[]> books) {
+        lock.writeLock().lock();
+        try {
+            for (Object[] book : books) {
+                Object[] old = byId.get((Integer) book[0]);
+                if (old != null) {
+                    remove(old);
+                    insert(new Object[]{old[0],
+                            book[1] != null ? book[1] : old[1],
+                            book[2] != null ? book[2] : old[2],
+                            book[3] != null ? book[3] : old[3]});
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteByIds(int[] ids) {
+        lock.writeLock().lock();
+        try {
+            for (int id : ids) {
+                Object[] row = byId.get(id);
+                if (row != null) {
+                    remove(row);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            byId.clear();
+            byTitle.clear();
+            byAuthor.clear();
+            byYear.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Object[]> viewPage(int afterId, int limit) {
+        lock.readLock().lock();
+        try {
+            List<Object[]> rows = new ArrayList<>(Math.min(limit, byId.size()));
+            for (Object[] row : byId.tailMap(afterId, false).values()) {
+                if (rows.size() == limit) {
+                    break;
+                }
+                rows.add(row.clone());
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long viewAll(Consumer<Object[]> consumer) {
+        lock.readLock().lock();
+        try {
+            for (Object[] row : byId.values()) {
+                consumer.accept(row.clone());
+            }
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private <K> List<Object[]> find(Map<K, Set<Integer>> index, K key) {
+        lock.readLock().lock();
+        try {
+            Set<Integer> ids = index.get(key);
+            if (ids == null) {
+                return new ArrayList<>();
+            }
+            List<Object[]> rows = new ArrayList<>(ids.size());
+            for (Integer id : ids) {
+                rows.add(byId.get(id).clone());
+            }
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Set<Integer> smaller(Set<Integer> current, Set<Integer> candidate) {
+        return current == null || candidate.size() < current.size() ? candidate : current;
+    }
+
+    private List<Object[]> ids(Set<Integer> ids) {
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            rows.add(byId.get(id));
+        }
+        return rows;
+    }
+
+    private void insert(Object[] row) {
+        Integer id = (Integer) row[0];
+        byId.put(id, row);
+        byTitle.computeIfAbsent((String) row[1], k -> new LinkedHashSet<>()).add(id);
+        byAuthor.computeIfAbsent((String) row[2], k -> new LinkedHashSet<>()).add(id);
+        byYear.computeIfAbsent((Integer) row[3], k -> new LinkedHashSet<>()).add(id);
+    }
+
+    private void remove(Object[] row) {
+        Integer id = (Integer) row[0];
+        byId.remove(id);
+        removeFromIndex(byTitle, (String) row[1], id);
+        removeFromIndex(byAuthor, (String) row[2], id);
+        removeFromIndex(byYear, (Integer) row[3], id);
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<Integer>> index, K key, Integer id) {
+        Set<Integer> ids = index.get(key);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(key);
+        }
+    }
+}
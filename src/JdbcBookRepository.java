@@ -0,0 +1,262 @@
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Каталог книг в PostgreSQL: каждая операция вызывает соответствующую хранимую процедуру или функцию.
+// Соединение берется из источника на время одной операции и сразу возвращается.
+public class JdbcBookRepository implements BookRepository {
+    // Максимальное число книг в одном вызове UpdateBooks/DeleteBooksByIds;
+    // большие наборы делятся на несколько вызовов, которые отправляются одним пакетом
+    private static final int BULK_CHUNK_SIZE = 5000;
+    // Число книг, которое драйвер получает с сервера за раз при чтении всего каталога (viewAll)
+    private static final int STREAM_FETCH_SIZE = 5000;
+
+    // Источник соединений (например, пул соединений текущей роли)
+    public interface ConnectionSource {
+        Connection getConnection() throws SQLException;
+    }
+
+    private final ConnectionSource source;
+    // Роль, от имени которой выполняются операции (для метрик)
+    private final String role;
+    // Контекст операции для отмены и таймаутов (null - запросы не отслеживаются)
+    private final DatabaseExecutor.OperationContext context;
+
+    public JdbcBookRepository(ConnectionSource source, String role, DatabaseExecutor.OperationContext context) {
+        this.source = source;
+        this.role = role;
+        this.context = context;
+    }
+
+    @Override
+    public void addBook(String title, String author, int year) throws SQLException {
+        call("AddBook", "CALL AddBook(?, ?, ?)", title, author, year);
+    }
+
+    @Override
+    public List<Object[]> findByTitle(String title) throws SQLException {
+        return query("FindBookByTitle", "SELECT * FROM FindBookByTitle(?)", title);
+    }
+
+    @Override
+    public List<Object[]> findByAuthor(String author) throws SQLException {
+        return query("FindBookByAuthor", "SELECT * FROM FindBookByAuthor(?)", author);
+    }
+
+    @Override
+    public List<Object[]> findByYear(int year) throws SQLException {
+        return query("FindBookByYear", "SELECT * FROM FindBookByYear(?)", year);
+    }
+
+    @Override
+    public List<Object[]> findBooks(String title, String author, Integer year, String sort, int limit) throws SQLException {
+        // Явные приведения типов нужны, чтобы сервер знал тип параметров, переданных как NULL
+        return query("FindBooks", "SELECT * FROM FindBooks(?::VARCHAR, ?::VARCHAR, ?::INT, ?, ?)",
+                title, author, year, sort, limit);
+    }
+
+    @Override
+    public List<Object[]> search(String query, int limit) throws SQLException {
+        return query("SearchBooks", "SELECT * FROM SearchBooks(?, ?)", query, limit);
+    }
+
+    @Override
+    public void updateBook(int id, String title, String author, int year) throws SQLException {
+        call("UpdateBook", "CALL UpdateBook(?, ?, ?, ?)", id, title, author, year);
+    }
+
+    @Override
+    public void deleteByTitle(String title) throws SQLException {
+        call("DeleteBookByTitle", "CALL DeleteBookByTitle(?)", title);
+    }
+
+    @Override
+    public void updateBooks(List<Object[]> books) throws SQLException {
+        List<Object[]> chunks = new ArrayList<>();
+        for (int from = 0; from < books.size(); from += BULK_CHUNK_SIZE) {
+            List<Object[]> chunk = books.subList(from, Math.min(books.size(), from + BULK_CHUNK_SIZE));
+            Integer[] ids = new Integer[chunk.size()];
+            String[] titles = new String[chunk.size()];
+            String[] authors = new String[chunk.size()];
+            Integer[] years = new Integer[chunk.size()];
+            for (int i = 0; i < chunk.size(); i++) {
+                Object[] book = chunk.get(i);
+                ids[i] = (Integer) book[0];
+                titles[i] = (String) book[1];
+                authors[i] = (String) book[2];
+                years[i] = (Integer) book[3];
+            }
+            chunks.add(new Object[]{ids, titles, authors, years});
+        }
+        batch("UpdateBooks", "CALL UpdateBooks(?, ?, ?, ?)", chunks);
+    }
+
+    @Override
+    public void deleteByIds(int[] ids) throws SQLException {
+        List<Object[]> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.length; from += BULK_CHUNK_SIZE) {
+            Integer[] chunk = Arrays.stream(ids, from, Math.min(ids.length, from + BULK_CHUNK_SIZE)).boxed().toArray(Integer[]::new);
+            chunks.add(new Object[]{chunk});
+        }
+        batch("DeleteBooksByIds", "CALL DeleteBooksByIds(?)", chunks);
+    }
+
+    @Override
+    public void clear() throws SQLException {
+        call("ClearTable", "CALL ClearTable()");
+    }
+
+    @Override
+    public List<Object[]> viewPage(int afterId, int limit) throws SQLException {
+        return query("ViewRecordsPage", "SELECT * FROM ViewRecordsPage(?, ?)", afterId, limit);
+    }
+
+    @Override
+    public long viewAll(Consumer<Object[]> consumer) throws SQLException {
+        return stream("ViewAllRecords", "SELECT * FROM ViewAllRecords()", STREAM_FETCH_SIZE, consumer);
+    }
+
+    // Вызов хранимой процедуры
+    private void call(String operation, String sql, Object... params) throws SQLException {
+        try (Connection conn = source.getConnection();
+             CallableStatement stmt = track(conn.prepareCall(sql))) {
+            bind(stmt, params);
+            Metrics.Timer timer = Metrics.timer(operation, role);
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                stmt.execute();
+                success = true;
+            } finally {
+                timer.record(start, success);
+            }
+        }
+    }
+
+    // Выполнение процедуры с несколькими наборами параметров одним пакетом JDBC в одной транзакции:
+    // либо применяются все наборы, либо ни один
+    private void batch(String operation, String sql, List<Object[]> paramSets) throws SQLException {
+        if (paramSets.isEmpty()) {
+            return;
+        }
+        try (Connection conn = source.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = track(conn.prepareStatement(sql))) {
+                for (Object[] params : paramSets) {
+                    bind(stmt, params);
+                    stmt.addBatch();
+                }
+                Metrics.Timer timer = Metrics.timer(operation, role);
+                long start = System.nanoTime();
+                boolean success = false;
+                try {
+                    stmt.executeBatch();
+                    conn.commit();
+                    success = true;
+                } finally {
+                    timer.record(start, success);
+                }
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    // Выполнение функции, возвращающей книги
+    private List<Object[]> query(String operation, String sql, Object... params) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        stream(operation, sql, 0, rows::add, params);
+        return rows;
+    }
+
+    // Выполнение функции с передачей каждой книги обработчику; возвращает число книг.
+    // Время выполнения запроса и время чтения результата учитываются в метриках раздельно.
+    // fetchSize > 0 - книги читаются порциями через курсор в транзакции только для чтения
+    // (как в BookExporter), иначе драйвер получает весь результат в память до передачи первой книги.
+    private long stream(String operation, String sql, int fetchSize, Consumer<Object[]> consumer,
+                        Object... params) throws SQLException {
+        try (Connection conn = source.getConnection()) {
+            if (fetchSize <= 0) {
+                return stream(conn, operation, sql, 0, consumer, params);
+            }
+            conn.setAutoCommit(false);
+            conn.setReadOnly(true);
+            try {
+                return stream(conn, operation, sql, fetchSize, consumer, params);
+            } finally {
+                try {
+                    conn.rollback(); // Транзакция только читала данные
+                } finally {
+                    conn.setReadOnly(false);
+                    conn.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    private long stream(Connection conn, String operation, String sql, int fetchSize, Consumer<Object[]> consumer,
+                        Object... params) throws SQLException {
+        try (PreparedStatement stmt = track(conn.prepareStatement(sql))) {
+            bind(stmt, params);
+            if (fetchSize > 0) {
+                stmt.setFetchSize(fetchSize);
+            }
+            Metrics.Timer timer = Metrics.timer(operation, role);
+            long start = System.nanoTime();
+            boolean success = false;
+            ResultSet rs;
+            try {
+                rs = stmt.executeQuery();
+                success = true;
+            } finally {
+                timer.record(start, success);
+            }
+
+            Metrics.Timer fetchTimer = Metrics.timer(operation + Metrics.FETCH_SUFFIX, role);
+            start = System.nanoTime();
+            success = false;
+            try (rs) {
+                long count = 0;
+                while (rs.next()) {
+                    consumer.accept(row(rs));
+                    count++;
+                }
+                success = true;
+                return count;
+            } finally {
+                fetchTimer.record(start, success);
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement stmt, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object param = params[i];
+            // Массивы передаются как массивы PostgreSQL
+            if (param instanceof Integer[]) {
+                param = stmt.getConnection().createArrayOf("integer", (Integer[]) param);
+            } else if (param instanceof String[]) {
+                param = stmt.getConnection().createArrayOf("varchar", (String[]) param);
+            }
+            stmt.setObject(i + 1, param);
+        }
+    }
+
+    private <S extends Statement> S track(S statement) throws SQLException {
+        return context != null ? context.track(statement) : statement;
+    }
+
+    private static Object[] row(ResultSet rs) throws SQLException {
+        return new Object[]{rs.getInt("id"), rs.getString("title"), rs.getString("author"), rs.getInt("year")};
+    }
+}
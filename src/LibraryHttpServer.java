@@ -0,0 +1,631 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.FilterOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// HTTP/JSON API каталога книг для работы без графического интерфейса (киоски, веб-каталог).
+// Каждый запрос обрабатывается в отдельном виртуальном потоке; соединения с базой берутся из общих пулов ролей,
+// поэтому число одновременных запросов ограничено только размером пулов, а не числом потоков.
+//
+// Авторизация - HTTP Basic с именем роли и ее паролем; запрос без заголовка Authorization выполняется от роли guest.
+//   GET    /api/books?after=0&limit=200                  - страница книг с id > after (keyset-пагинация)
+//   GET    /api/books/all                                 - все книги одним потоковым ответом
+//   GET    /api/books/search?q=...&limit=50               - ранжированный поиск (SearchBooks)
+//   GET    /api/books/search?title=&author=&year=&sort=&limit= - поиск по нескольким полям (FindBooks)
+//   POST   /api/books          {"title","author","year"}  - добавление книги
+//   PUT    /api/books/{id}     {"title","author","year"}  - обновление книги (отсутствующие поля не меняются)
+//   DELETE /api/books/{id}                                - удаление книги по id
+//   DELETE /api/books?title=...                           - удаление книг по названию
+//   POST   /api/books/clear                               - удаление всех книг
+// Изменять данные могут только admin и moderator.
+public class LibraryHttpServer implements AutoCloseable {
+    private static final String BASE_PATH = "/api/books";
+    // Ограничения размера страницы и результата поиска
+    private static final int DEFAULT_PAGE_SIZE = 200;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int DEFAULT_SEARCH_LIMIT = 50;
+    // Размер страницы, которыми читается таблица при потоковой выдаче всех книг
+    private static final int STREAM_PAGE_SIZE = 1000;
+    // Максимальный размер тела запроса
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    // Репозиторий книг, работающий от имени роли
+    public interface RepositoryFactory {
+        BookRepository open(String role, DatabaseExecutor.OperationContext context);
+    }
+
+    // Проверка пароля роли
+    public interface Credentials {
+        boolean check(String role, String password);
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final RepositoryFactory repositories;
+    private final Credentials credentials;
+    private final SearchCache searchCache;
+    private final int timeoutSeconds;
+
+    // Ошибка запроса, о которой клиенту сообщается указанным кодом HTTP
+    private static class ApiException extends Exception {
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    public LibraryHttpServer(int port, RepositoryFactory repositories, Credentials credentials,
+                             SearchCache searchCache, int timeoutSeconds) throws IOException {
+        this.repositories = repositories;
+        this.credentials = credentials;
+        this.searchCache = searchCache;
+        this.timeoutSeconds = timeoutSeconds;
+
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext(BASE_PATH, this::handle);
+    }
+
+    // Метод для запуска сервера
+    public void start() {
+        server.start();
+    }
+
+    // Метод для остановки сервера (выполняющимся запросам дается до секунды на завершение)
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Обработка одного запроса
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                String role = authenticate(exchange);
+                route(exchange, role);
+            } catch (ApiException ex) {
+                sendError(exchange, ex.status, ex.getMessage());
+            } catch (NumberFormatException ex) {
+                sendError(exchange, 400, "Некорректное число: " + ex.getMessage());
+            } catch (IllegalArgumentException ex) {
+                sendError(exchange, 400, ex.getMessage());
+            } catch (SQLException ex) {
+                sendError(exchange, 500, "Ошибка базы данных: " + ex.getMessage());
+            } catch (RuntimeException ex) {
+                // Непредвиденная ошибка: подробности только в журнале сервера, клиенту - ответ 500
+                System.err.println("Ошибка при обработке запроса " + exchange.getRequestMethod() + " "
+                        + exchange.getRequestURI().getPath() + ": " + ex);
+                sendError(exchange, 500, "Внутренняя ошибка сервера");
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange, String role) throws IOException, ApiException, SQLException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        String rest = path.length() > BASE_PATH.length() ? path.substring(BASE_PATH.length()) : "";
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        DatabaseExecutor.OperationContext ctx = new DatabaseExecutor.OperationContext(timeoutSeconds);
+        BookRepository repository = repositories.open(role, ctx);
+
+        if (rest.isEmpty() || rest.equals("/")) {
+            switch (method) {
+                case "GET":
+                    int after = Integer.parseInt(params.getOrDefault("after", "0"));
+                    int limit = limit(params, DEFAULT_PAGE_SIZE);
+                    List<Object[]> rows = repository.viewPage(after, limit);
+                    StringBuilder page = new StringBuilder("{\"books\":");
+                    appendBooks(page, rows);
+                    page.append(",\"nextAfter\":")
+                            .append(rows.size() == limit ? rows.get(rows.size() - 1)[0] : "null").append('}');
+                    sendJson(exchange, 200, page.toString());
+                    return;
+                case "POST":
+                    requireWriter(role);
+                    Map<String, Object> book = readBody(exchange);
+                    repository.addBook(requireString(book, "title"), requireString(book, "author"), requireInt(book, "year"));
+                    searchCache.invalidate(); // Данные изменились - результаты поиска в кэше устарели
+                    sendJson(exchange, 201, "{\"status\":\"created\"}");
+                    return;
+                case "DELETE":
+                    requireWriter(role);
+                    String title = params.get("title");
+                    if (title == null || title.isEmpty()) {
+                        throw new ApiException(400, "Укажите параметр title или id книги в пути");
+                    }
+                    repository.deleteByTitle(title);
+                    searchCache.invalidate();
+                    sendJson(exchange, 200, "{\"status\":\"deleted\"}");
+                    return;
+                default:
+                    throw new ApiException(405, "Метод не поддерживается: " + method);
+            }
+        }
+
+        if (rest.equals("/all") && method.equals("GET")) {
+            streamAll(exchange, repository);
+            return;
+        }
+        if (rest.equals("/search") && method.equals("GET")) {
+            sendJson(exchange, 200, appendBooks(new StringBuilder(), search(repository, params)).toString());
+            return;
+        }
+        if (rest.equals("/clear") && method.equals("POST")) {
+            requireWriter(role);
+            repository.clear();
+            searchCache.invalidate();
+            sendJson(exchange, 200, "{\"status\":\"cleared\"}");
+            return;
+        }
+        if (rest.matches("/\\d+")) {
+            int id = Integer.parseInt(rest.substring(1));
+            switch (method) {
+                case "PUT":
+                    requireWriter(role);
+                    Map<String, Object> book = readBody(exchange);
+                    Object year = book.get("year");
+                    if (year != null && !(year instanceof Integer)) {
+                        throw new ApiException(400, "Поле year должно быть целым числом");
+                    }
+                    repository.updateBooks(List.<Object[]>of(new Object[]{id, optionalString(book, "title"), optionalString(book, "author"), year}));
+                    searchCache.invalidate();
+                    sendJson(exchange, 200, "{\"status\":\"updated\"}");
+                    return;
+                case "DELETE":
+                    requireWriter(role);
+                    repository.deleteByIds(new int[]{id});
+                    searchCache.invalidate();
+                    sendJson(exchange, 200, "{\"status\":\"deleted\"}");
+                    return;
+                default:
+                    throw new ApiException(405, "Метод не поддерживается: " + method);
+            }
+        }
+        throw new ApiException(404, "Неизвестный адрес: " + path);
+    }
+
+    // Поиск: параметр q - ранжированный поиск, иначе поиск по полям title, author, year
+    private List<Object[]> search(BookRepository repository, Map<String, String> params) throws SQLException, ApiException {
+        String query = params.get("q");
+        if (query != null) {
+            int limit = limit(params, DEFAULT_SEARCH_LIMIT);
+            String cacheKey = limit + "\u0000" + query;
+            List<Object[]> cached = searchCache.get("api-search", cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+            long cacheGeneration = searchCache.generation();
+            List<Object[]> rows = repository.search(query, limit);
+            searchCache.put("api-search", cacheKey, rows, cacheGeneration);
+            return rows;
+        }
+
+        String title = params.get("title");
+        String author = params.get("author");
+        Integer year = params.containsKey("year") ? Integer.valueOf(params.get("year")) : null;
+        if (title == null && author == null && year == null) {
+            throw new ApiException(400, "Укажите параметр q или хотя бы один из параметров title, author, year");
+        }
+        String sort = params.getOrDefault("sort", "id");
+        int limit = limit(params, DEFAULT_SEARCH_LIMIT);
+        String cacheKey = (title == null ? "-" : "+" + title) + '\u0000' + (author == null ? "-" : "+" + author)
+                + '\u0000' + year + '\u0000' + sort + '\u0000' + limit;
+        List<Object[]> cached = searchCache.get("combined", cacheKey);
+        if (cached != null) {
+            return cached;
+        }
+        long cacheGeneration = searchCache.generation();
+        List<Object[]> rows = repository.findBooks(title, author, year, sort, limit);
+        searchCache.put("combined", cacheKey, rows, cacheGeneration);
+        return rows;
+    }
+
+    // Потоковая выдача всех книг: таблица читается страницами по id и каждая страница сразу отправляется клиенту,
+    // поэтому память сервера не зависит от размера таблицы, а соединение с базой занято только на время чтения страницы.
+    // Первая страница читается до отправки заголовков, чтобы ошибка в начале вернулась обычным ответом 500.
+    // Если чтение не удалось позже, соединение разрывается без завершающего фрагмента chunked-ответа,
+    // и клиент видит ошибку передачи, а не успешный ответ с обрезанным массивом.
+    private void streamAll(HttpExchange exchange, BookRepository repository) throws IOException, SQLException {
+        List<Object[]> rows = repository.viewPage(0, STREAM_PAGE_SIZE);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0); // Длина заранее неизвестна - ответ передается частями
+        AbortableOutputStream body = new AbortableOutputStream(exchange.getResponseBody());
+        exchange.setStreams(null, body);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8), 64 * 1024);
+        boolean completed = false;
+        try {
+            writer.write('[');
+            StringBuilder sb = new StringBuilder(256);
+            boolean first = true;
+            while (true) {
+                for (Object[] row : rows) {
+                    sb.setLength(0);
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    first = false;
+                    appendBook(sb, row);
+                    writer.append(sb);
+                }
+                if (rows.size() < STREAM_PAGE_SIZE) {
+                    break;
+                }
+                rows = repository.viewPage((Integer) rows.get(rows.size() - 1)[0], STREAM_PAGE_SIZE);
+            }
+            writer.write("]\n");
+            writer.close(); // Завершает chunked-ответ
+            completed = true;
+        } finally {
+            if (!completed) {
+                // Writer не закрывается: закрытие отправило бы завершающий фрагмент
+                body.abort();
+            }
+        }
+    }
+
+    // Тело ответа, которое можно прервать: после abort() закрытие бросает IOException, не закрывая
+    // исходный поток, и HttpExchange.close() в ответ на это закрывает соединение с клиентом
+    private static class AbortableOutputStream extends FilterOutputStream {
+        private boolean aborted;
+
+        AbortableOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        void abort() {
+            aborted = true;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (aborted) {
+                throw new IOException("Ответ прерван");
+            }
+            super.close();
+        }
+    }
+
+    // Определение роли по заголовку Authorization (Basic роль:пароль)
+    private String authenticate(HttpExchange exchange) throws ApiException {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null) {
+            return "guest";
+        }
+        if (header.regionMatches(true, 0, "Basic ", 0, 6)) {
+            String decoded;
+            try {
+                decoded = new String(Base64.getDecoder().decode(header.substring(6).trim()), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException ex) {
+                decoded = "";
+            }
+            int colon = decoded.indexOf(':');
+            if (colon > 0) {
+                String role = decoded.substring(0, colon);
+                if (credentials.check(role, decoded.substring(colon + 1))) {
+                    return role;
+                }
+            }
+        }
+        exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"library\"");
+        throw new ApiException(401, "Неверная роль или пароль");
+    }
+
+    private static void requireWriter(String role) throws ApiException {
+        if (!role.equals("admin") && !role.equals("moderator")) {
+            throw new ApiException(403, "Доступ запрещен! Только администратор или модератор могут изменять данные.");
+        }
+    }
+
+    private static int limit(Map<String, String> params, int defaultLimit) throws ApiException {
+        int limit = Integer.parseInt(params.getOrDefault("limit", String.valueOf(defaultLimit)));
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ApiException(400, "Параметр limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    private static String requireString(Map<String, Object> body, String field) throws ApiException {
+        String value = optionalString(body, field);
+        if (value == null || value.isEmpty()) {
+            throw new ApiException(400, "Не заполнено поле " + field);
+        }
+        return value;
+    }
+
+    private static String optionalString(Map<String, Object> body, String field) throws ApiException {
+        Object value = body.get(field);
+        if (value != null && !(value instanceof String)) {
+            throw new ApiException(400, "Поле " + field + " должно быть строкой");
+        }
+        return (String) value;
+    }
+
+    private static int requireInt(Map<String, Object> body, String field) throws ApiException {
+        Object value = body.get(field);
+        if (!(value instanceof Integer)) {
+            throw new ApiException(400, "Поле " + field + " должно быть целым числом");
+        }
+        return (Integer) value;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+            params.put(key, value);
+        }
+        return params;
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange) throws IOException, ApiException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new ApiException(413, "Слишком большой запрос");
+            }
+            return new JsonObjectParser(new String(body, StandardCharsets.UTF_8)).parse();
+        }
+    }
+
+    private static StringBuilder appendBooks(StringBuilder sb, List<Object[]> rows) {
+        sb.append('[');
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendBook(sb, rows.get(i));
+        }
+        return sb.append(']');
+    }
+
+    private static void appendBook(StringBuilder sb, Object[] row) {
+        sb.append("{\"id\":").append(row[0]).append(",\"title\":");
+        appendString(sb, (String) row[1]);
+        sb.append(",\"author\":");
+        appendString(sb, (String) row[2]);
+        sb.append(",\"year\":").append(row[3]).append('}');
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            // Ответ уже начат (потоковая выдача) - streamAll разрывает соединение сам
+            System.err.println("Ответ на запрос " + exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath()
+                    + " прерван: " + message);
+            return;
+        }
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        appendString(sb, message == null ? "" : message);
+        sendJson(exchange, status, sb.append('}').toString());
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    // Разбор JSON-объекта с полями-скалярами (строки, целые числа, true/false, null)
+    private static class JsonObjectParser {
+        private final String text;
+        private int pos;
+
+        JsonObjectParser(String text) {
+            this.text = text;
+        }
+
+        Map<String, Object> parse() throws ApiException {
+            Map<String, Object> result = new HashMap<>();
+            skipSpaces();
+            expect('{');
+            skipSpaces();
+            if (peek() == '}') {
+                pos++;
+                return finish(result);
+            }
+            while (true) {
+                skipSpaces();
+                String key = readString();
+                skipSpaces();
+                expect(':');
+                skipSpaces();
+                result.put(key, readValue());
+                skipSpaces();
+                char c = next();
+                if (c == '}') {
+                    return finish(result);
+                }
+                if (c != ',') {
+                    throw error();
+                }
+            }
+        }
+
+        private Map<String, Object> finish(Map<String, Object> result) throws ApiException {
+            skipSpaces();
+            if (pos != text.length()) {
+                throw error();
+            }
+            return result;
+        }
+
+        private Object readValue() throws ApiException {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+            int start = pos;
+            if (c == '-') {
+                pos++;
+            }
+            while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                pos++;
+            }
+            if (pos == start || (pos < text.length() && ".eE".indexOf(text.charAt(pos)) >= 0)) {
+                throw error();
+            }
+            try {
+                return Integer.valueOf(text.substring(start, pos));
+            } catch (NumberFormatException ex) {
+                throw error();
+            }
+        }
+
+        private String readString() throws ApiException {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char e = next();
+                switch (e) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        sb.append(e);
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'u':
+                        if (pos + 4 > text.length()) {
+                            throw error();
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw error();
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw error();
+                }
+            }
+        }
+
+        private void skipSpaces() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private char peek() throws ApiException {
+            if (pos >= text.length()) {
+                throw error();
+            }
+            return text.charAt(pos);
+        }
+
+        private char next() throws ApiException {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char c) throws ApiException {
+            if (next() != c) {
+                throw error();
+            }
+        }
+
+        private ApiException error() {
+            return new ApiException(400, "Некорректный JSON в позиции " + pos);
+        }
+    }
+}
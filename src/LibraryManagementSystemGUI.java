@@ -4,9 +4,20 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.sql.*;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class LibraryManagementSystemGUI {
     // Параметры подключения к системной базе данных (для создания и удаления базы данных)
@@ -20,21 +31,154 @@ public class LibraryManagementSystemGUI {
     // Текущая роль пользователя (по умолчанию "гость")
     private static String currentRole = "guest";
 
+    // Настройки пулов соединений (загружаются из config.properties)
+    private static ConnectionPool.Settings poolSettings;
+
+    // Пулы соединений к базе данных Library, по одному на каждую роль
+    private static final Map<String, ConnectionPool> LIBRARY_POOLS = new ConcurrentHashMap<>();
+
+    // Программа завершается: новые пулы соединений больше не создаются
+    private static volatile boolean poolsShutDown;
+
+    // Пул соединений к системной базе данных (создается при первом обращении)
+    private static ConnectionPool systemPool;
+
+    // Размер страницы и число страниц в памяти при просмотре всех записей
+    private static final int VIEW_PAGE_SIZE = 200;
+    private static final int VIEW_MAX_CACHED_PAGES = 20;
+
+    // Число результатов поиска записи по умолчанию
+    private static final int SEARCH_LIMIT = 100;
+
+    // Число авторов с наибольшим числом книг в статистике каталога
+    private static final int STATS_TOP_AUTHORS = 100;
+
+    // Максимальное число результатов и время выполнения одного запроса быстрого поиска
+    private static final int QUICK_SEARCH_LIMIT = 50;
+    private static final int QUICK_SEARCH_TIMEOUT_SECONDS = 5;
+
+    // Максимальное время выполнения одной операции с базой данных, в секундах (0 - без ограничения)
+    private static int operationTimeoutSeconds;
+
+    // Размер порции (в строках) и способ загрузки при массовом импорте книг
+    private static int importChunkSize;
+    private static boolean importUseCopy;
+
+    // Число строк, получаемых с сервера за одно обращение при выгрузке книг в файл
+    private static int exportFetchSize;
+
+    // Кэш результатов поиска (создается после загрузки настроек)
+    private static SearchCache searchCache;
+
+    // HTTP-сервер в режиме без графического интерфейса (null - сервер не запущен)
+    private static LibraryHttpServer httpServer;
+
+    // Порт HTTP-сервера по умолчанию
+    private static int serverPort;
+
+    // Снимок каталога для поиска без базы данных: файл, интервал обновления в минутах (0 - не обновлять),
+    // нужно ли гостю всегда читать снимок, не подключаясь к базе, и интервал в секундах между попытками
+    // подключиться к базе в автономном режиме (0 - не пытаться)
+    private static Path snapshotFile;
+    private static long snapshotIntervalMinutes;
+    private static boolean snapshotPreferForGuest;
+    private static long snapshotReconnectSeconds;
+
+    // Открытый снимок, из которого гость читает книги (null - работа с базой данных).
+    // Меняется потоками обновления снимка и повторного подключения, поэтому volatile.
+    private static volatile CatalogSnapshot offlineSnapshot;
+
+    // Отложенная запись добавлений и изменений книг: включена ли, размер очереди, размер транзакции,
+    // время набора пачки и время ожидания места в заполненной очереди
+    private static boolean writeBehindEnabled;
+    private static int writeBehindCapacity;
+    private static int writeBehindMaxBatch;
+    private static long writeBehindLingerMillis;
+    private static long writeBehindMaxWaitMillis;
+
+    // Очередь отложенной записи (создается при первой правке, если отложенная запись включена)
+    private static WriteBehindQueue writeBehindQueue;
+
+    // Периодическая запись метрик в файлы (null - запись отключена)
+    private static MetricsExporter metricsExporter;
+
     // Статический блок для загрузки пароля из файла config.properties
     static {
         try (FileInputStream fis = new FileInputStream("config.properties")) {
             Properties props = new Properties();
             props.load(fis);
             PASSWORD = props.getProperty("db.password"); // Загружаем пароль из файла
+
+            // Загружаем настройки пула соединений (если не заданы - используем значения по умолчанию)
+            poolSettings = new ConnectionPool.Settings(
+                    Integer.parseInt(props.getProperty("pool.minSize", "1")),
+                    Integer.parseInt(props.getProperty("pool.maxSize", "8")),
+                    Long.parseLong(props.getProperty("pool.maxWaitMillis", "10000")),
+                    Long.parseLong(props.getProperty("pool.idleTimeoutMillis", "300000")),
+                    Integer.parseInt(props.getProperty("pool.validationTimeoutSeconds", "2")),
+                    Integer.parseInt(props.getProperty("pool.statementCacheSize", "32")));
+
+            operationTimeoutSeconds = Integer.parseInt(props.getProperty("db.operationTimeoutSeconds", "30"));
+            importChunkSize = Integer.parseInt(props.getProperty("import.chunkSize", "10000"));
+            importUseCopy = Boolean.parseBoolean(props.getProperty("import.useCopy", "true"));
+            exportFetchSize = Integer.parseInt(props.getProperty("export.fetchSize", "10000"));
+            serverPort = Integer.parseInt(props.getProperty("server.port", "8080"));
+
+            snapshotFile = Paths.get(props.getProperty("snapshot.file", "catalog.snapshot"));
+            snapshotIntervalMinutes = Long.parseLong(props.getProperty("snapshot.intervalMinutes", "60"));
+            snapshotPreferForGuest = Boolean.parseBoolean(props.getProperty("snapshot.preferForGuest", "false"));
+            snapshotReconnectSeconds = Long.parseLong(props.getProperty("snapshot.reconnectSeconds", "30"));
+
+            writeBehindEnabled = Boolean.parseBoolean(props.getProperty("writeBehind.enabled", "false"));
+            writeBehindCapacity = Integer.parseInt(props.getProperty("writeBehind.capacity", "1000"));
+            writeBehindMaxBatch = Integer.parseInt(props.getProperty("writeBehind.maxBatch", "500"));
+            writeBehindLingerMillis = Long.parseLong(props.getProperty("writeBehind.lingerMillis", "20"));
+            writeBehindMaxWaitMillis = Long.parseLong(props.getProperty("writeBehind.maxWaitMillis", "10000"));
+
+            searchCache = new SearchCache(
+                    Integer.parseInt(props.getProperty("cache.maxEntries", "500")),
+                    Long.parseLong(props.getProperty("cache.ttlSeconds", "60")) * 1000);
+
+            // Запись метрик в metrics.prom и metrics.json (интервал 0 отключает запись)
+            long metricsInterval = Long.parseLong(props.getProperty("metrics.exportIntervalSeconds", "15"));
+            if (metricsInterval > 0) {
+                metricsExporter = new MetricsExporter(Paths.get(props.getProperty("metrics.exportDir", ".")), metricsInterval);
+            }
         } catch (Exception ex) {
             // Если произошла ошибка при загрузке пароля, выводим сообщение и завершаем программу
-            JOptionPane.showMessageDialog(null, "Ошибка при загрузке пароля: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+            if (GraphicsEnvironment.isHeadless()) {
+                System.err.println("Ошибка при загрузке пароля: " + ex.getMessage());
+            } else {
+                JOptionPane.showMessageDialog(null, "Ошибка при загрузке пароля: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+            }
             System.exit(1); // Завершаем программу с кодом ошибки 1
         }
+
+        // При завершении программы записываем метрики и закрываем все пулы соединений
+        Runtime.getRuntime().addShutdownHook(new Thread(LibraryManagementSystemGUI::shutdown));
     }
 
-    // Главный метод программы
+    // Главный метод программы.
+    // С аргументом --server [порт] программа работает без окна как HTTP-сервер (см. LibraryHttpServer).
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--server")) {
+            int port = serverPort;
+            if (args.length > 1) {
+                try {
+                    port = Integer.parseInt(args[1]);
+                } catch (NumberFormatException ex) {
+                    port = -1;
+                }
+                if (port < 0 || port > 65535) {
+                    System.err.println("Некорректный номер порта: " + args[1]);
+                    System.err.println("Использование: --server [порт], порт от 0 до 65535 (по умолчанию server.port из config.properties)");
+                    System.exit(2);
+                }
+            }
+            startServer(port);
+            return;
+        }
+
         // Выбор роли при запуске программы
         String[] roles = {"Администратор", "Модератор", "Гость"};
         int roleChoice = JOptionPane.showOptionDialog(
@@ -57,21 +201,44 @@ public class LibraryManagementSystemGUI {
             currentRole = "guest"; // Гость
         }
 
-        // Проверка подключения к базе данных при запуске программы
-        try (Connection conn = getLibraryConnection(currentRole)) {
-            if (conn != null) {
-                System.out.println("Connected to the database as " + currentRole);
+        // Гость может сразу работать со снимком каталога, не дожидаясь подключения к базе
+        if (currentRole.equals("guest") && snapshotPreferForGuest && openOfflineSnapshot()) {
+            System.out.println("Using catalog snapshot " + snapshotFile);
+        } else {
+            // Проверка подключения к базе данных при запуске программы
+            try (Connection conn = getLibraryConnection(currentRole)) {
+                if (conn != null) {
+                    System.out.println("Connected to the database as " + currentRole);
+                } else {
+                    JOptionPane.showMessageDialog(null, "Failed to connect to the database!", "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            } catch (SQLException e) {
+                // База недоступна - гость продолжает работу со снимком каталога, если он есть
+                if (currentRole.equals("guest") && openOfflineSnapshot()) {
+                    JOptionPane.showMessageDialog(null, "Сервер базы данных недоступен: " + e.getMessage()
+                            + "\nПоиск и просмотр выполняются по снимку каталога от "
+                            + new java.util.Date(offlineSnapshot.getCreatedMillis()), "Автономный режим", JOptionPane.WARNING_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(null, "SQL Error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }
+
+        // Снимком каталога пользуется только гость, поэтому только у гостя снимок периодически обновляется,
+        // пока есть подключение к базе (в том числе когда гость сам выбрал работу со снимком).
+        // Если база недоступна, программа периодически пытается подключиться снова.
+        if (currentRole.equals("guest")) {
+            if (offlineSnapshot == null || snapshotPreferForGuest) {
+                startSnapshotUpdates();
             } else {
-                JOptionPane.showMessageDialog(null, "Failed to connect to the database!", "Error", JOptionPane.ERROR_MESSAGE);
+                startReconnect();
             }
-        } catch (SQLException e) {
-            JOptionPane.showMessageDialog(null, "SQL Error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
 
         // Создаем главное окно приложения
         JFrame frame = new JFrame("Управление базой данных библиотеки");
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE); // Закрытие программы при закрытии окна
-        frame.setSize(300, 400); // Устанавливаем размер окна
+        frame.setSize(300, 640); // Устанавливаем размер окна
 
         // Центрируем окно на экране
         frame.setLocationRelativeTo(null);
@@ -102,14 +269,20 @@ public class LibraryManagementSystemGUI {
         JButton clearTableButton = createButton("Clear Table", panel, gbc);
         JButton addRecordButton = createButton("Add Record", panel, gbc);
         JButton searchRecordButton = createButton("Search Record", panel, gbc);
+        JButton quickSearchButton = createButton("Quick Search", panel, gbc);
         JButton updateRecordButton = createButton("Update Record", panel, gbc);
         JButton deleteRecordButton = createButton("Delete Record", panel, gbc);
         JButton viewAllButton = createButton("View All", panel, gbc);
+        JButton importButton = createButton("Import Books", panel, gbc);
+        JButton exportButton = createButton("Export Books", panel, gbc);
+        JButton catalogStatsButton = createButton("Catalog Statistics", panel, gbc);
+        JButton statsButton = createButton("Statistics", panel, gbc);
+        JButton metricsButton = createButton("Metrics", panel, gbc);
 
         // Обработчики событий для каждой кнопки
         createDatabaseButton.addActionListener(e -> {
             if (currentRole.equals("admin")) {
-                createDatabase(); // Только администратор может создавать базу данных
+                createDatabase(panel); // Только администратор может создавать базу данных
             } else {
                 JOptionPane.showMessageDialog(panel, "Доступ запрещен! Только администратор может создавать базу данных.", "Ошибка", JOptionPane.ERROR_MESSAGE);
             }
@@ -117,7 +290,7 @@ public class LibraryManagementSystemGUI {
 
         deleteDatabaseButton.addActionListener(e -> {
             if (currentRole.equals("admin")) {
-                deleteDatabase(); // Только администратор может удалять базу данных
+                deleteDatabase(panel); // Только администратор может удалять базу данных
             } else {
                 JOptionPane.showMessageDialog(panel, "Доступ запрещен! Только администратор может удалять базу данных.", "Ошибка", JOptionPane.ERROR_MESSAGE);
             }
@@ -125,7 +298,7 @@ public class LibraryManagementSystemGUI {
 
         clearTableButton.addActionListener(e -> {
             if (currentRole.equals("admin") || currentRole.equals("moderator")) {
-                clearTable(); // Администратор и модератор могут очищать таблицу
+                clearTable(panel); // Администратор и модератор могут очищать таблицу
             } else {
                 JOptionPane.showMessageDialog(panel, "Доступ запрещен! Только администратор или модератор могут очищать таблицу.", "Ошибка", JOptionPane.ERROR_MESSAGE);
             }
@@ -141,6 +314,8 @@ public class LibraryManagementSystemGUI {
 
         searchRecordButton.addActionListener(e -> searchRecord(panel)); // Поиск доступен всем
 
+        quickSearchButton.addActionListener(e -> openQuickSearch(panel)); // Быстрый поиск доступен всем
+
         updateRecordButton.addActionListener(e -> {
             if (currentRole.equals("admin") || currentRole.equals("moderator")) {
                 updateRecord(panel); // Администратор и модератор могут обновлять записи
@@ -158,6 +333,22 @@ public class LibraryManagementSystemGUI {
         });
 
         viewAllButton.addActionListener(e -> viewAllRecords(panel)); // Просмотр всех записей доступен всем
+
+        importButton.addActionListener(e -> {
+            if (currentRole.equals("admin") || currentRole.equals("moderator")) {
+                importBooks(panel); // Администратор и модератор могут загружать книги из файла
+            } else {
+                JOptionPane.showMessageDialog(panel, "Доступ запрещен! Только администратор или модератор могут загружать книги.", "Ошибка", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        exportButton.addActionListener(e -> exportBooks(panel)); // Выгрузка книг в файл доступна всем
+
+        catalogStatsButton.addActionListener(e -> showCatalogStatistics(panel)); // Статистика каталога доступна всем
+
+        statsButton.addActionListener(e -> showStats(panel)); // Статистика доступна всем
+
+        metricsButton.addActionListener(e -> new MetricsDialog(SwingUtilities.getWindowAncestor(panel)).setVisible(true)); // Метрики доступны всем
     }
 
     // Метод для создания кнопки и добавления ее на панель
@@ -170,83 +361,352 @@ public class LibraryManagementSystemGUI {
 
     // Метод для подключения к системной базе данных (postgres)
     private static Connection getSystemConnection() throws SQLException {
-        return DriverManager.getConnection(SYSTEM_URL, USER, PASSWORD);
+        ConnectionPool pool;
+        synchronized (LibraryManagementSystemGUI.class) {
+            if (poolsShutDown) {
+                throw new SQLException("Программа завершает работу");
+            }
+            if (systemPool == null) {
+                systemPool = new ConnectionPool("system", SYSTEM_URL, USER, PASSWORD, poolSettings);
+            }
+            pool = systemPool;
+        }
+        return pool.getConnection();
     }
 
     // Метод для подключения к базе данных Library с учетом роли
     private static Connection getLibraryConnection(String role) throws SQLException {
-        String url = LIBRARY_URL;
-        String user = role; // Используем роль как имя пользователя
-        String password;
+        String password = getRolePassword(role);
+
+        // Используем роль как имя пользователя; пул для роли создается при первом обращении
+        ConnectionPool pool = LIBRARY_POOLS.computeIfAbsent(role,
+                r -> new ConnectionPool(r, LIBRARY_URL, r, password, poolSettings));
+        // Пул, созданный одновременно с завершением программы, мог не попасть в closePools() - закрываем его сами
+        if (poolsShutDown) {
+            LIBRARY_POOLS.remove(role, pool);
+            pool.close();
+            throw new SQLException("Программа завершает работу");
+        }
+        return pool.getConnection();
+    }
 
+    // Метод для получения пароля роли
+    private static String getRolePassword(String role) {
         // В зависимости от роли выбираем соответствующий пароль
         switch (role) {
             case "admin":
-                password = "admin_password";
-                break;
+                return "admin_password";
             case "moderator":
-                password = "moderator_password";
-                break;
+                return "moderator_password";
             case "guest":
-                password = "guest_password";
-                break;
+                return "guest_password";
             default:
                 throw new IllegalArgumentException("Неизвестная роль: " + role);
         }
+    }
 
-        return DriverManager.getConnection(url, user, password);
+    // Метод для получения каталога книг с соединениями из пула текущей роли
+    // (в автономном режиме гостя - снимка каталога)
+    private static BookRepository getRepository(DatabaseExecutor.OperationContext ctx) {
+        if (offlineSnapshot != null) {
+            return offlineSnapshot;
+        }
+        return new JdbcBookRepository(() -> getLibraryConnection(currentRole), currentRole, ctx);
     }
 
-    // Метод для создания базы данных
-    private static void createDatabase() {
-        try (Connection connSys = getSystemConnection()) {
-            // Выполнение SQL-запроса для создания базы данных
-            try (Statement stmt = connSys.createStatement()) {
-                stmt.execute("CREATE DATABASE Library;");
-                JOptionPane.showMessageDialog(null, "База данных создана успешно!");
+    // Метод для получения очереди отложенной записи текущей роли (null - отложенная запись выключена)
+    private static synchronized WriteBehindQueue getWriteBehindQueue() {
+        if (!writeBehindEnabled || offlineSnapshot != null) {
+            return null;
+        }
+        if (writeBehindQueue == null) {
+            String role = currentRole;
+            writeBehindQueue = new WriteBehindQueue(() -> getLibraryConnection(role), role, writeBehindCapacity,
+                    writeBehindMaxBatch, writeBehindLingerMillis, writeBehindMaxWaitMillis);
+        }
+        return writeBehindQueue;
+    }
+
+    // Метод для ожидания записи отложенных правок: вызывается перед операциями, которые удаляют
+    // или массово меняют книги, чтобы правки из очереди не применились после них
+    private static void flushWrites() throws SQLException {
+        WriteBehindQueue queue;
+        synchronized (LibraryManagementSystemGUI.class) {
+            queue = writeBehindQueue;
+        }
+        if (queue != null) {
+            queue.flush();
+        }
+    }
+
+    // Метод для обработки результата отложенной правки (вызывается в потоке записи):
+    // после записи сбрасываем кэш поиска, об ошибке сообщаем пользователю
+    private static void writeCompleted(JPanel panel, String message, Exception error) {
+        if (error == null) {
+            searchCache.invalidate(); // Данные изменились - результаты поиска в кэше устарели
+        } else {
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(panel, message + error.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
+        }
+    }
+
+    // Метод для открытия снимка каталога; false - снимка нет или он поврежден
+    private static boolean openOfflineSnapshot() {
+        try {
+            Path latest = CatalogSnapshot.latest(snapshotFile);
+            if (latest == null) {
+                return false;
             }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(null, "Ошибка при создании базы данных: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+            offlineSnapshot = CatalogSnapshot.open(latest);
+            return true;
+        } catch (IOException ex) {
+            System.err.println("Ошибка при открытии снимка каталога: " + ex.getMessage());
+            return false;
         }
+    }
 
-        try (Connection connLib = getLibraryConnection(currentRole)) {
-            // Чтение SQL-кода из файла sample.sql
-            String sql = new String(Files.readAllBytes(Paths.get("samples.sql")));
+    // Метод для запуска периодического обновления снимка каталога.
+    // Первое обновление выполняется сразу, если снимка нет или он старше интервала обновления.
+    private static void startSnapshotUpdates() {
+        if (snapshotIntervalMinutes <= 0) {
+            return;
+        }
+        long intervalMillis = TimeUnit.MINUTES.toMillis(snapshotIntervalMinutes);
+        long initialDelay = 0;
+        try {
+            Path latest = CatalogSnapshot.latest(snapshotFile);
+            if (latest != null) {
+                long age = System.currentTimeMillis() - Files.getLastModifiedTime(latest).toMillis();
+                initialDelay = Math.max(0, intervalMillis - age);
+            }
+        } catch (IOException ignored) {
+            // Время изменения неизвестно - обновляем снимок сразу
+        }
 
-            // Выполнение SQL-кода для создания таблиц и процедур
-            try (Statement stmt = connLib.createStatement()) {
-                stmt.execute(sql); // Выполнение SQL-запроса
-                JOptionPane.showMessageDialog(null, "Процедуры созданы успешно!");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        String role = currentRole;
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                CatalogSnapshot.write(new JdbcBookRepository(() -> getLibraryConnection(role), role, null), snapshotFile);
+                // Гость, который читает снимок, переходит на обновленный файл
+                if (offlineSnapshot != null && openOfflineSnapshot()) {
+                    searchCache.invalidate();
+                }
+            } catch (IOException | SQLException ex) {
+                System.err.println("Ошибка при обновлении снимка каталога: " + ex.getMessage());
             }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(null, "Ошибка при создании процедур: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+        }, initialDelay, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Метод для периодических попыток подключиться к базе в автономном режиме гостя.
+    // Когда база снова доступна, поиск и просмотр переключаются со снимка на базу
+    // и запускается периодическое обновление снимка.
+    private static void startReconnect() {
+        if (snapshotReconnectSeconds <= 0) {
+            return;
         }
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "catalog-reconnect");
+            thread.setDaemon(true);
+            return thread;
+        });
+        String role = currentRole;
+        scheduler.scheduleWithFixedDelay(() -> {
+            try (Connection conn = getLibraryConnection(role)) {
+                if (conn == null) {
+                    return;
+                }
+            } catch (SQLException ex) {
+                return; // База все еще недоступна - следующая попытка через интервал
+            }
+            offlineSnapshot = null;
+            searchCache.invalidate(); // Результаты поиска по снимку могли устареть
+            scheduler.shutdown();
+            startSnapshotUpdates();
+            System.out.println("Connected to the database as " + role);
+            SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(null,
+                    "Подключение к базе данных восстановлено: поиск и просмотр выполняются по базе",
+                    "Подключение восстановлено", JOptionPane.INFORMATION_MESSAGE));
+        }, snapshotReconnectSeconds, snapshotReconnectSeconds, TimeUnit.SECONDS);
     }
 
-    // Метод для удаления базы данных
-    private static void deleteDatabase() {
-        try (Connection conn = getSystemConnection()) {
-            // Выполнение SQL-запроса для удаления базы данных
-            try (Statement stmt = conn.createStatement()) {
-                stmt.execute("DROP DATABASE IF EXISTS Library;");
-                JOptionPane.showMessageDialog(null, "База данных удалена успешно!");
+    // Метод для запуска HTTP-сервера: репозитории работают через общие пулы соединений ролей
+    private static void startServer(int port) {
+        try {
+            httpServer = new LibraryHttpServer(port,
+                    (role, ctx) -> new JdbcBookRepository(() -> getLibraryConnection(role), role, ctx),
+                    LibraryManagementSystemGUI::checkRolePassword,
+                    searchCache,
+                    operationTimeoutSeconds);
+            httpServer.start();
+            System.out.println("HTTP API is listening on port " + httpServer.getPort());
+        } catch (IOException ex) {
+            System.err.println("Ошибка при запуске HTTP-сервера: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Метод для проверки пароля роли
+    private static boolean checkRolePassword(String role, String password) {
+        String expected;
+        try {
+            expected = getRolePassword(role);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+        // Сравнение за постоянное время, чтобы пароль нельзя было подобрать по времени ответа
+        return MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Метод для закрытия пулов соединений к базе данных Library
+    private static void closeLibraryPools() {
+        for (String role : LIBRARY_POOLS.keySet()) {
+            ConnectionPool pool = LIBRARY_POOLS.remove(role);
+            if (pool != null) {
+                pool.close();
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Ошибка при удалении базы данных: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
         }
     }
 
-    // Метод для очистки таблицы
-    private static void clearTable() {
-        try (Connection conn = getLibraryConnection(currentRole)) {
-            // Вызов хранимой процедуры ClearTable
-            try (CallableStatement stmt = conn.prepareCall("CALL ClearTable()")) {
-                stmt.execute();
-                JOptionPane.showMessageDialog(null, "Таблица успешно очищена!");
+    // Метод для завершения работы: финальная запись метрик и закрытие всех пулов соединений
+    private static void shutdown() {
+        if (httpServer != null) {
+            httpServer.close();
+        }
+        // Отложенные правки записываются до закрытия пулов соединений
+        synchronized (LibraryManagementSystemGUI.class) {
+            if (writeBehindQueue != null) {
+                writeBehindQueue.close();
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Ошибка при очистке таблицы: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
         }
+        if (metricsExporter != null) {
+            metricsExporter.close();
+        }
+        closePools();
+    }
+
+    // Метод для закрытия всех пулов соединений
+    private static void closePools() {
+        poolsShutDown = true; // До закрытия, чтобы пул, созданный в это время, закрылся в getLibraryConnection
+        closeLibraryPools();
+        synchronized (LibraryManagementSystemGUI.class) {
+            if (systemPool != null) {
+                systemPool.close();
+                systemPool = null;
+            }
+        }
+    }
+
+    // Метод для отображения статистики пулов соединений и кэша поиска
+    private static void showStats(JPanel panel) {
+        StringBuilder result = new StringBuilder();
+        synchronized (LibraryManagementSystemGUI.class) {
+            if (systemPool != null) {
+                result.append(systemPool.getStats()).append("\n");
+            }
+        }
+        for (ConnectionPool pool : LIBRARY_POOLS.values()) {
+            result.append(pool.getStats()).append("\n");
+        }
+        if (result.length() == 0) {
+            result.append("Пулы соединений еще не созданы\n");
+        }
+        result.append(searchCache);
+        synchronized (LibraryManagementSystemGUI.class) {
+            if (writeBehindQueue != null) {
+                result.append("\n").append(writeBehindQueue);
+            }
+        }
+        if (offlineSnapshot != null) {
+            result.append("\n").append(offlineSnapshot);
+        }
+
+        JOptionPane.showMessageDialog(panel, result.toString(), "Статистика", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    // Метод для отображения статистики каталога (числа считает сервер по таблицам агрегатов)
+    private static void showCatalogStatistics(JPanel panel) {
+        if (offlineSnapshot != null) {
+            JOptionPane.showMessageDialog(panel, "Статистика каталога недоступна в автономном режиме!", "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        new CatalogStatisticsDialog(SwingUtilities.getWindowAncestor(panel), ctx -> {
+            try (Connection conn = getLibraryConnection(currentRole)) {
+                return CatalogStatistics.load(conn, ctx, currentRole, STATS_TOP_AUTHORS);
+            }
+        }, operationTimeoutSeconds).setVisible(true);
+    }
+
+    // Метод для создания базы данных
+    private static void createDatabase(JPanel panel) {
+        DatabaseExecutor.submit(panel, "Создание базы данных", 0, ctx -> {
+            try (Connection connSys = getSystemConnection()) {
+                // Выполнение SQL-запроса для создания базы данных
+                try (Statement stmt = ctx.track(connSys.createStatement())) {
+                    stmt.execute("CREATE DATABASE Library;");
+                }
+            }
+            return null;
+        }, result -> {
+            JOptionPane.showMessageDialog(panel, "База данных создана успешно!");
+            createProcedures(panel);
+        }, ex -> {
+            JOptionPane.showMessageDialog(panel, "Ошибка при создании базы данных: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+            createProcedures(panel);
+        });
+    }
+
+    // Метод для применения миграций схемы к базе данных Library
+    private static void createProcedures(JPanel panel) {
+        MigrationRunner runner = new MigrationRunner(Paths.get("migrations"), Paths.get("samples.sql"));
+        DatabaseExecutor.submit(panel, "Применение миграций", 0, ctx -> {
+            // Миграции выполняются от имени владельца базы данных: роли admin, moderator и guest
+            // создаются самими миграциями. Соединение одноразовое, поэтому берется не из пула.
+            try (Connection connLib = DriverManager.getConnection(LIBRARY_URL, USER, PASSWORD)) {
+                return runner.migrate(connLib, ctx);
+            } finally {
+                searchCache.invalidate(); // Схема могла измениться - результаты поиска в кэше устарели
+            }
+        }, applied -> {
+            if (applied.isEmpty()) {
+                JOptionPane.showMessageDialog(panel, "Схема базы данных уже актуальна!");
+            } else {
+                JOptionPane.showMessageDialog(panel, "Миграции применены успешно:\n" + String.join("\n", applied));
+            }
+        }, ex -> JOptionPane.showMessageDialog(panel, "Ошибка при применении миграций: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
+    }
+
+    // Метод для удаления базы данных
+    private static void deleteDatabase(JPanel panel) {
+        DatabaseExecutor.submit(panel, "Удаление базы данных", 0, ctx -> {
+            // Закрываем соединения из пулов, иначе PostgreSQL не даст удалить базу данных
+            closeLibraryPools();
+
+            try (Connection conn = getSystemConnection()) {
+                // Выполнение SQL-запроса для удаления базы данных
+                try (Statement stmt = ctx.track(conn.createStatement())) {
+                    stmt.execute("DROP DATABASE IF EXISTS Library;");
+                    searchCache.invalidate(); // Данные изменились - результаты поиска в кэше устарели
+                }
+            }
+            return null;
+        }, result -> JOptionPane.showMessageDialog(panel, "База данных удалена успешно!"),
+           ex -> JOptionPane.showMessageDialog(panel, "Ошибка при удалении базы данных: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
+    }
+
+    // Метод для очистки таблицы
+    private static void clearTable(JPanel panel) {
+        DatabaseExecutor.submit(panel, "Очистка таблицы", operationTimeoutSeconds, ctx -> {
+            // Вызов хранимой процедуры ClearTable
+            flushWrites();
+            getRepository(ctx).clear();
+            searchCache.invalidate(); // Данные изменились - результаты поиска в кэше устарели
+            return null;
+        }, result -> JOptionPane.showMessageDialog(panel, "Таблица успешно очищена!"),
+           ex -> JOptionPane.showMessageDialog(panel, "Ошибка при очистке таблицы: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
     }
 
     // Метод для добавления записи
@@ -258,18 +718,24 @@ public class LibraryManagementSystemGUI {
         if (title != null && author != null && yearStr != null && !yearStr.isEmpty()) {
             try {
                 int year = Integer.parseInt(yearStr);
-                try (Connection conn = getLibraryConnection(currentRole)) {
-                    // Вызов хранимой процедуры AddBook
-                    try (CallableStatement stmt = conn.prepareCall("CALL AddBook(?, ?, ?)")) {
-                        stmt.setString(1, title);
-                        stmt.setString(2, author);
-                        stmt.setInt(3, year);
-                        stmt.execute();
-                        JOptionPane.showMessageDialog(panel, "Книга успешно добавлена!");
-                    }
-                } catch (SQLException ex) {
-                    JOptionPane.showMessageDialog(panel, "Ошибка при добавлении книги: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+                WriteBehindQueue queue = getWriteBehindQueue();
+                if (queue != null) {
+                    // Книга ставится в очередь; окно прогресса появится, только если очередь заполнена
+                    DatabaseExecutor.submit(panel, "Добавление книги", operationTimeoutSeconds, ctx -> {
+                        queue.addBook(title, author, year,
+                                error -> writeCompleted(panel, "Ошибка при добавлении книги \"" + title + "\": ", error));
+                        return null;
+                    }, result -> { },
+                       ex -> JOptionPane.showMessageDialog(panel, "Ошибка при добавлении книги: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
+                    return;
                 }
+                DatabaseExecutor.submit(panel, "Добавление книги", operationTimeoutSeconds, ctx -> {
+                    // Вызов хранимой процедуры AddBook
+                    getRepository(ctx).addBook(title, author, year);
+                    searchCache.invalidate(); // Данные изменились - результаты поиска в кэше устарели
+                    return null;
+                }, result -> JOptionPane.showMessageDialog(panel, "Книга успешно добавлена!"),
+                   ex -> JOptionPane.showMessageDialog(panel, "Ошибка при добавлении книги: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(panel, "Некорректный год издания!", "Ошибка", JOptionPane.ERROR_MESSAGE);
             }
@@ -278,77 +744,115 @@ public class LibraryManagementSystemGUI {
         }
     }
 
-    // Метод для поиска записи
+    // Метод для поиска записи по любому сочетанию полей (пустое поле не участвует в поиске)
     private static void searchRecord(JPanel panel) {
-        // Всплывающее окно для выбора поля поиска
-        String[] options = {"Title", "Author", "Year"};
-        int choice = JOptionPane.showOptionDialog(
-                panel,
-                "Выберите поле для поиска:",
-                "Поиск книги",
-                JOptionPane.DEFAULT_OPTION,
-                JOptionPane.QUESTION_MESSAGE,
-                null,
-                options,
-                options[0] // По умолчанию выбрана первая кнопка (Title)
-        );
+        JTextField titleField = new JTextField(20);
+        JTextField authorField = new JTextField(20);
+        JTextField yearField = new JTextField(20);
+        String[] sortOptions = {"id", "title", "author", "year"};
+        JComboBox<String> sortBox = new JComboBox<>(sortOptions);
+        JTextField limitField = new JTextField(String.valueOf(SEARCH_LIMIT), 20);
+
+        JPanel form = new JPanel(new GridLayout(0, 2, 5, 5));
+        form.add(new JLabel("Название:"));
+        form.add(titleField);
+        form.add(new JLabel("Автор:"));
+        form.add(authorField);
+        form.add(new JLabel("Год издания:"));
+        form.add(yearField);
+        form.add(new JLabel("Сортировка:"));
+        form.add(sortBox);
+        form.add(new JLabel("Не более записей:"));
+        form.add(limitField);
 
         // Если пользователь нажал "Отмена" или закрыл окно, завершаем метод
-        if (choice == -1) {
+        int choice = JOptionPane.showConfirmDialog(panel, form, "Поиск книги", JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION) {
             return;
         }
 
-        // Получаем выбранное поле для поиска
-        String searchField = options[choice].toLowerCase(); // title, author или year
-
-        // Запрашиваем у пользователя значение для поиска
-        String searchValue = JOptionPane.showInputDialog("Введите значение для поиска:");
-        if (searchValue == null || searchValue.isEmpty()) {
+        String title = titleField.getText().isEmpty() ? null : titleField.getText();
+        String author = authorField.getText().isEmpty() ? null : authorField.getText();
+        String yearStr = yearField.getText().trim();
+        if (title == null && author == null && yearStr.isEmpty()) {
             JOptionPane.showMessageDialog(panel, "Введите значение для поиска!", "Ошибка", JOptionPane.ERROR_MESSAGE);
             return;
         }
 
-        // Выполняем поиск в зависимости от выбранного поля
-        try (Connection conn = getLibraryConnection(currentRole)) {
-            String sql;
-            switch (searchField) {
-                case "title":
-                    sql = "SELECT * FROM FindBookByTitle(?)";
-                    break;
-                case "author":
-                    sql = "SELECT * FROM FindBookByAuthor(?)";
-                    break;
-                case "year":
-                    sql = "SELECT * FROM FindBookByYear(?)";
-                    break;
-                default:
-                    throw new IllegalArgumentException("Неизвестное поле для поиска: " + searchField);
-            }
-
-            // Вызов соответствующей функции для поиска
-            try (CallableStatement stmt = conn.prepareCall(sql)) {
-                stmt.setString(1, searchValue);
-                ResultSet rs = stmt.executeQuery();
-
-                StringBuilder result = new StringBuilder();
-                while (rs.next()) {
-                    result.append("ID: ").append(rs.getInt("id")).append(" ")
-                            .append("Название: ").append(rs.getString("title")).append(" ")
-                            .append("Автор: ").append(rs.getString("author")).append(" ")
-                            .append("Год: ").append(rs.getInt("year")).append("\n");
-                }
-
-                if (result.length() > 0) {
-                    JOptionPane.showMessageDialog(panel, result.toString(), "Результат поиска", JOptionPane.INFORMATION_MESSAGE);
-                } else {
-                    JOptionPane.showMessageDialog(panel, "Книга не найдена!", "Информация", JOptionPane.INFORMATION_MESSAGE);
-                }
+        // Год и ограничение числа записей должны быть числами
+        Integer year;
+        int limit;
+        try {
+            year = yearStr.isEmpty() ? null : Integer.parseInt(yearStr);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(panel, "Некорректный год издания!", "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        try {
+            limit = Integer.parseInt(limitField.getText().trim());
+            if (limit <= 0) {
+                throw new NumberFormatException();
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(panel, "Ошибка при поиске книги: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
-        } catch (IllegalArgumentException ex) {
-            JOptionPane.showMessageDialog(panel, ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(panel, "Некорректное число записей!", "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        String sort = (String) sortBox.getSelectedItem();
+
+        // Повторный поиск с теми же параметрами обслуживается из кэша без обращения к базе
+        // (незаданный фильтр отличается от фильтра со строкой "null")
+        String cacheKey = (title == null ? "-" : "+" + title) + '\u0000' + (author == null ? "-" : "+" + author)
+                + '\u0000' + year + '\u0000' + sort + '\u0000' + limit;
+        List<Object[]> cached = searchCache.get("combined", cacheKey);
+        if (cached != null) {
+            showSearchResult(panel, cached);
+            return;
+        }
+        long cacheGeneration = searchCache.generation();
+
+        DatabaseExecutor.submit(panel, "Поиск книги", operationTimeoutSeconds, ctx -> {
+            // Один вызов функции FindBooks со всеми заданными фильтрами
+            List<Object[]> rows = getRepository(ctx).findBooks(title, author, year, sort, limit);
+            searchCache.put("combined", cacheKey, rows, cacheGeneration);
+            return rows;
+        }, rows -> showSearchResult(panel, rows),
+           ex -> JOptionPane.showMessageDialog(panel, "Ошибка при поиске книги: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
+    }
+
+    // Метод для вывода результата поиска
+    private static void showSearchResult(JPanel panel, List<Object[]> rows) {
+        StringBuilder result = new StringBuilder();
+        for (Object[] row : rows) {
+            result.append("ID: ").append(row[0]).append(" ")
+                    .append("Название: ").append(row[1]).append(" ")
+                    .append("Автор: ").append(row[2]).append(" ")
+                    .append("Год: ").append(row[3]).append("\n");
         }
+
+        if (result.length() > 0) {
+            JOptionPane.showMessageDialog(panel, result.toString(), "Результат поиска", JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            JOptionPane.showMessageDialog(panel, "Книга не найдена!", "Информация", JOptionPane.INFORMATION_MESSAGE);
+        }
+    }
+
+    // Метод для открытия окна быстрого поиска (поиск по мере ввода)
+    private static void openQuickSearch(JPanel panel) {
+        new QuickSearchDialog(SwingUtilities.getWindowAncestor(panel), LibraryManagementSystemGUI::searchBooks,
+                QUICK_SEARCH_LIMIT, QUICK_SEARCH_TIMEOUT_SECONDS).setVisible(true);
+    }
+
+    // Метод для ранжированного поиска книг (префиксный, полнотекстовый и нечеткий поиск)
+    private static List<Object[]> searchBooks(DatabaseExecutor.OperationContext ctx, String query, int limit) throws SQLException {
+        List<Object[]> cached = searchCache.get("search", query);
+        if (cached != null) {
+            return cached;
+        }
+        long cacheGeneration = searchCache.generation();
+
+        List<Object[]> rows = getRepository(ctx).search(query, limit);
+        searchCache.put("search", query, rows, cacheGeneration);
+        return rows;
     }
 
     // Метод для обновления записи
@@ -364,19 +868,24 @@ public class LibraryManagementSystemGUI {
                 if (newTitle != null && newAuthor != null && newYearStr != null && !newYearStr.isEmpty()) {
                     try {
                         int newYear = Integer.parseInt(newYearStr);
-                        try (Connection conn = getLibraryConnection(currentRole)) {
-                            // Вызов хранимой процедуры UpdateBook
-                            try (CallableStatement stmt = conn.prepareCall("CALL UpdateBook(?, ?, ?, ?)")) {
-                                stmt.setInt(1, id);
-                                stmt.setString(2, newTitle);
-                                stmt.setString(3, newAuthor);
-                                stmt.setInt(4, newYear);
-                                stmt.execute();
-                                JOptionPane.showMessageDialog(panel, "Книга обновлена успешно!");
-                            }
-                        } catch (SQLException ex) {
-                            JOptionPane.showMessageDialog(panel, "Ошибка при обновлении книги: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+                        WriteBehindQueue queue = getWriteBehindQueue();
+                        if (queue != null) {
+                            // Изменение ставится в очередь; окно прогресса появится, только если очередь заполнена
+                            DatabaseExecutor.submit(panel, "Обновление книги", operationTimeoutSeconds, ctx -> {
+                                queue.updateBook(id, newTitle, newAuthor, newYear,
+                                        error -> writeCompleted(panel, "Ошибка при обновлении книги " + id + ": ", error));
+                                return null;
+                            }, result -> { },
+                               ex -> JOptionPane.showMessageDialog(panel, "Ошибка при обновлении книги: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
+                            return;
                         }
+                        DatabaseExecutor.submit(panel, "Обновление книги", operationTimeoutSeconds, ctx -> {
+                            // Вызов хранимой процедуры UpdateBook
+                            getRepository(ctx).updateBook(id, newTitle, newAuthor, newYear);
+                            searchCache.invalidate(); // Данные изменились - результаты поиска в кэше устарели
+                            return null;
+                        }, result -> JOptionPane.showMessageDialog(panel, "Книга обновлена успешно!"),
+                           ex -> JOptionPane.showMessageDialog(panel, "Ошибка при обновлении книги: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
                     } catch (NumberFormatException ex) {
                         JOptionPane.showMessageDialog(panel, "Некорректный год издания!", "Ошибка", JOptionPane.ERROR_MESSAGE);
                     }
@@ -395,45 +904,214 @@ public class LibraryManagementSystemGUI {
     private static void deleteRecord(JPanel panel) {
         String title = JOptionPane.showInputDialog("Введите название книги для удаления:");
         if (title != null && !title.isEmpty()) {
-            try (Connection conn = getLibraryConnection(currentRole)) {
+            DatabaseExecutor.submit(panel, "Удаление книги", operationTimeoutSeconds, ctx -> {
                 // Вызов хранимой процедуры DeleteBookByTitle
-                try (CallableStatement stmt = conn.prepareCall("CALL DeleteBookByTitle(?)")) {
-                    stmt.setString(1, title);
-                    stmt.execute();
-                    JOptionPane.showMessageDialog(panel, "Книга удалена успешно!");
-                }
-            } catch (SQLException ex) {
-                JOptionPane.showMessageDialog(panel, "Ошибка при удалении книги: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
-            }
+                flushWrites();
+                getRepository(ctx).deleteByTitle(title);
+                searchCache.invalidate(); // Данные изменились - результаты поиска в кэше устарели
+                return null;
+            }, result -> JOptionPane.showMessageDialog(panel, "Книга удалена успешно!"),
+               ex -> JOptionPane.showMessageDialog(panel, "Ошибка при удалении книги: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
         } else {
             JOptionPane.showMessageDialog(panel, "Введите название книги!", "Ошибка", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    // Метод для массовой загрузки книг из файла CSV/TSV
+    private static void importBooks(JPanel panel) {
+        JFileChooser chooser = new JFileChooser(".");
+        chooser.setDialogTitle("Выберите файл с книгами (название, автор, год)");
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV / TSV", "csv", "tsv", "tab", "txt"));
+        if (chooser.showOpenDialog(panel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+
+        BookImporter importer = new BookImporter(importChunkSize, importUseCopy);
+        DatabaseExecutor.submit(panel, "Загрузка книг", 0, ctx -> {
+            try (Connection conn = getLibraryConnection(currentRole)) {
+                return importer.importFile(conn, file, ctx, (read, loaded, rejected, rowsPerSecond) ->
+                        ctx.setStatus(String.format("Прочитано: %d, загружено: %d, отклонено: %d, %.0f строк/с",
+                                read, loaded, rejected, rowsPerSecond)));
+            } finally {
+                // Порции фиксируются по отдельности, поэтому кэш сбрасываем даже при ошибке
+                searchCache.invalidate();
+            }
+        }, result -> {
+            String message = String.format("Загрузка завершена (%s).%nПрочитано строк: %d%nЗагружено книг: %d%nОтклонено строк: %d%nВремя: %.1f с (%.0f строк/с)",
+                    result.usedCopy ? "COPY" : "пакетный AddBook",
+                    result.read, result.loaded, result.rejected, result.millis / 1000.0, result.rowsPerSecond());
+            if (result.rejectedFile != null) {
+                message += "\nОтклоненные строки записаны в файл: " + result.rejectedFile;
+            }
+            JOptionPane.showMessageDialog(panel, message, "Загрузка книг", JOptionPane.INFORMATION_MESSAGE);
+        }, ex -> JOptionPane.showMessageDialog(panel, "Ошибка при загрузке книг: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
+    }
+
+    // Метод для выгрузки всех книг в файл CSV или JSON (расширение .gz включает сжатие)
+    private static void exportBooks(JPanel panel) {
+        JFileChooser chooser = new JFileChooser(".");
+        chooser.setDialogTitle("Файл для выгрузки книг (.csv, .json, при необходимости .gz)");
+        chooser.setSelectedFile(new java.io.File("books.csv"));
+        if (chooser.showSaveDialog(panel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        Path file = chooser.getSelectedFile().toPath();
+        boolean gzip = file.getFileName().toString().toLowerCase().endsWith(".gz");
+
+        BookExporter exporter = new BookExporter(BookExporter.formatOf(file), gzip, exportFetchSize);
+        DatabaseExecutor.submit(panel, "Выгрузка книг", 0, ctx -> {
+            try (Connection conn = getLibraryConnection(currentRole)) {
+                return exporter.exportFile(conn, file, ctx, (rows, bytes, rowsPerSecond) ->
+                        ctx.setStatus(String.format("Выгружено: %d строк, %.1f МБ, %.0f строк/с",
+                                rows, bytes / 1048576.0, rowsPerSecond)));
+            }
+        }, result -> JOptionPane.showMessageDialog(panel, String.format(
+                "Выгрузка завершена (%s).%nФайл: %s%nВыгружено книг: %d%nОбъем данных: %.1f МБ%nВремя: %.1f с (%.0f строк/с)",
+                result.usedCopy ? "COPY" : "курсор", file, result.rows, result.bytes / 1048576.0,
+                result.millis / 1000.0, result.rowsPerSecond()), "Выгрузка книг", JOptionPane.INFORMATION_MESSAGE),
+           ex -> JOptionPane.showMessageDialog(panel, "Ошибка при выгрузке книг: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
+    }
+
     // Метод для просмотра всех записей в таблице
     private static void viewAllRecords(JPanel panel) {
-        try (Connection conn = getLibraryConnection(currentRole)) {
-            // SQL-запрос для получения всех записей из таблицы Book
-            String sql = "SELECT * FROM ViewAllRecords()";
-            try (Statement stmt = conn.createStatement()) {
-                ResultSet rs = stmt.executeQuery(sql);
-
-                StringBuilder result = new StringBuilder();
-                while (rs.next()) {
-                    result.append("ID: ").append(rs.getInt("id")).append(" ")
-                            .append("Название: ").append(rs.getString("title")).append(" ")
-                            .append("Автор: ").append(rs.getString("author")).append(" ")
-                            .append("Год: ").append(rs.getInt("year")).append("\n");
-                }
+        // Модель загружает записи страницами по мере прокрутки таблицы
+        BookTableModel model = new BookTableModel(
+                LibraryManagementSystemGUI::loadRecordsPage,
+                VIEW_PAGE_SIZE,
+                VIEW_MAX_CACHED_PAGES,
+                operationTimeoutSeconds,
+                ex -> JOptionPane.showMessageDialog(panel, "Ошибка при получении данных: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
 
-                if (result.length() > 0) {
-                    JOptionPane.showMessageDialog(panel, result.toString(), "Все записи", JOptionPane.INFORMATION_MESSAGE);
-                } else {
-                    JOptionPane.showMessageDialog(panel, "Таблица пуста!", "Информация", JOptionPane.INFORMATION_MESSAGE);
-                }
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(false); // Сортировка всей таблицы на клиенте потребовала бы загрузить все записи
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION); // Можно выбрать сразу много книг
+        table.getColumnModel().getColumn(0).setPreferredWidth(60);
+        table.getColumnModel().getColumn(1).setPreferredWidth(250);
+        table.getColumnModel().getColumn(2).setPreferredWidth(180);
+        table.getColumnModel().getColumn(3).setPreferredWidth(60);
+
+        // Строка состояния: сколько строк известно и сколько страниц в памяти
+        JLabel status = new JLabel(" ");
+        model.addTableModelListener(e -> status.setText(
+                (model.getRowCount() == 0 ? "Таблица пуста!" : "Строк: " + model.getRowCount() + (model.isExhausted() ? "" : "+"))
+                        + "   Страниц в памяти: " + model.getCachedPageCount()));
+
+        JDialog dialog = new JDialog(SwingUtilities.getWindowAncestor(panel), "Все записи");
+        dialog.setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+        dialog.add(new JScrollPane(table), BorderLayout.CENTER);
+        dialog.add(status, BorderLayout.SOUTH);
+
+        // Администратор и модератор могут изменять и удалять сразу все выбранные книги
+        if (currentRole.equals("admin") || currentRole.equals("moderator")) {
+            JButton updateSelectedButton = new JButton("Update Selected");
+            JButton deleteSelectedButton = new JButton("Delete Selected");
+            updateSelectedButton.addActionListener(e -> updateSelectedRecords(table, model));
+            deleteSelectedButton.addActionListener(e -> deleteSelectedRecords(table, model));
+            JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+            buttons.add(updateSelectedButton);
+            buttons.add(deleteSelectedButton);
+            dialog.add(buttons, BorderLayout.NORTH);
+        }
+        dialog.setSize(600, 500);
+        dialog.setLocationRelativeTo(panel);
+        dialog.setVisible(true);
+    }
+
+    // Метод для получения выбранных в таблице книг (null - ничего не выбрано).
+    // id книг из страниц, которых нет в памяти, загружаются позже, при выполнении операции.
+    private static BookTableModel.Selection getSelectedBooks(JTable table, BookTableModel model) {
+        int[] rows = table.getSelectedRows();
+        if (rows.length == 0) {
+            JOptionPane.showMessageDialog(table, "Выберите книги в таблице!", "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+        return model.getSelection(rows);
+    }
+
+    // Метод для обновления всех выбранных книг (пустое поле оставляет прежнее значение)
+    private static void updateSelectedRecords(JTable table, BookTableModel model) {
+        BookTableModel.Selection selection = getSelectedBooks(table, model);
+        if (selection == null) {
+            return;
+        }
+
+        JTextField titleField = new JTextField(20);
+        JTextField authorField = new JTextField(20);
+        JTextField yearField = new JTextField(20);
+        JPanel form = new JPanel(new GridLayout(0, 2, 5, 5));
+        form.add(new JLabel("Новое название:"));
+        form.add(titleField);
+        form.add(new JLabel("Новый автор:"));
+        form.add(authorField);
+        form.add(new JLabel("Новый год издания:"));
+        form.add(yearField);
+
+        int choice = JOptionPane.showConfirmDialog(table, form, "Обновление книг: " + selection.size(),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.QUESTION_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        String title = titleField.getText().isEmpty() ? null : titleField.getText();
+        String author = authorField.getText().isEmpty() ? null : authorField.getText();
+        String yearStr = yearField.getText().trim();
+        if (title == null && author == null && yearStr.isEmpty()) {
+            JOptionPane.showMessageDialog(table, "Заполните хотя бы одно поле!", "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        Integer year;
+        try {
+            year = yearStr.isEmpty() ? null : Integer.parseInt(yearStr);
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(table, "Некорректный год издания!", "Ошибка", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        DatabaseExecutor.submit(table, "Обновление книг", operationTimeoutSeconds, ctx -> {
+            int[] ids = selection.resolve(ctx);
+            List<Object[]> books = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                books.add(new Object[]{id, title, author, year});
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(panel, "Ошибка при получении данных: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE);
+            // Один вызов UpdateBooks (или пакет вызовов для очень большого выбора) в одной транзакции
+            flushWrites();
+            getRepository(ctx).updateBooks(books);
+            searchCache.invalidate(); // Данные изменились - результаты поиска в кэше устарели
+            return ids.length;
+        }, count -> {
+            model.reload();
+            JOptionPane.showMessageDialog(table, "Обновлено книг: " + count);
+        }, ex -> JOptionPane.showMessageDialog(table, "Ошибка при обновлении книг: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
+    }
+
+    // Метод для удаления всех выбранных книг
+    private static void deleteSelectedRecords(JTable table, BookTableModel model) {
+        BookTableModel.Selection selection = getSelectedBooks(table, model);
+        if (selection == null) {
+            return;
+        }
+        int choice = JOptionPane.showConfirmDialog(table, "Удалить выбранные книги (" + selection.size() + ")?",
+                "Удаление книг", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+        if (choice != JOptionPane.YES_OPTION) {
+            return;
         }
+
+        DatabaseExecutor.submit(table, "Удаление книг", operationTimeoutSeconds, ctx -> {
+            int[] ids = selection.resolve(ctx);
+            // Один вызов DeleteBooksByIds (или пакет вызовов для очень большого выбора) в одной транзакции
+            flushWrites();
+            getRepository(ctx).deleteByIds(ids);
+            searchCache.invalidate(); // Данные изменились - результаты поиска в кэше устарели
+            return ids.length;
+        }, count -> {
+            model.reload();
+            JOptionPane.showMessageDialog(table, "Удалено книг: " + count);
+        }, ex -> JOptionPane.showMessageDialog(table, "Ошибка при удалении книг: " + ex.getMessage(), "Ошибка", JOptionPane.ERROR_MESSAGE));
+    }
+
+    // Метод для загрузки одной страницы записей (keyset-пагинация по id)
+    private static List<Object[]> loadRecordsPage(DatabaseExecutor.OperationContext ctx, int afterId, int limit) throws SQLException {
+        return getRepository(ctx).viewPage(afterId, limit);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Метрики операций с базой данных: для каждой пары (операция, роль) хранятся
+// гистограмма задержек и счетчик ошибок.
+public class Metrics {
+    // Имена операций, которые не являются вызовами хранимых процедур
+    public static final String CONNECTION_ACQUIRE = "connection.acquire";
+    // Суффикс для времени чтения результата запроса (ResultSet) на клиенте
+    public static final String FETCH_SUFFIX = ".fetch";
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentHashMap<>();
+
+    // Метрика одной операции для одной роли
+    public static class Timer {
+        public final String operation;
+        public final String role;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+
+        Timer(String operation, String role) {
+            this.operation = operation;
+            this.role = role;
+        }
+
+        // Запись длительности операции, начатой в момент startNanos (System.nanoTime())
+        public void record(long startNanos, boolean success) {
+            histogram.record(System.nanoTime() - startNanos);
+            if (!success) {
+                errors.increment();
+            }
+        }
+
+        public LatencyHistogram.Snapshot snapshot() {
+            return histogram.snapshot();
+        }
+
+        public long errors() {
+            return errors.sum();
+        }
+    }
+
+    // Метод для получения метрики операции (создается при первом обращении)
+    public static Timer timer(String operation, String role) {
+        return TIMERS.computeIfAbsent(operation + '\u0000' + role, k -> new Timer(operation, role));
+    }
+
+    // Метод для получения всех метрик, упорядоченных по операции и роли
+    public static List<Timer> timers() {
+        List<Timer> timers = new ArrayList<>(TIMERS.values());
+        timers.sort(Comparator.comparing((Timer t) -> t.operation).thenComparing(t -> t.role));
+        return timers;
+    }
+}
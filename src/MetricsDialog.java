@@ -0,0 +1,65 @@
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.Locale;
+
+// Окно с метриками операций: число вызовов, ошибки и перцентили задержек за все время работы программы.
+// Таблица обновляется автоматически.
+public class MetricsDialog extends JDialog {
+    private static final int REFRESH_MILLIS = 2000;
+
+    private final DefaultTableModel model = new DefaultTableModel(
+            new Object[]{"Операция", "Роль", "Вызовов", "Ошибок", "p50, мс", "p90, мс", "p99, мс", "Макс., мс", "Среднее, мс"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final Timer refreshTimer;
+
+    public MetricsDialog(Window owner) {
+        super(owner, "Метрики");
+        setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+
+        JTable table = new JTable(model);
+        table.getColumnModel().getColumn(0).setPreferredWidth(200);
+
+        add(new JScrollPane(table), BorderLayout.CENTER);
+        add(new JLabel(" Задержки операций с базой данных с момента запуска программы; "
+                + Metrics.FETCH_SUFFIX + " - чтение результата запроса"), BorderLayout.SOUTH);
+        setSize(850, 400);
+        setLocationRelativeTo(owner);
+
+        refresh();
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        refreshTimer.start();
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+        super.dispose();
+    }
+
+    private void refresh() {
+        model.setRowCount(0);
+        for (Metrics.Timer timer : Metrics.timers()) {
+            LatencyHistogram.Snapshot snapshot = timer.snapshot();
+            model.addRow(new Object[]{
+                    timer.operation,
+                    timer.role,
+                    snapshot.count,
+                    timer.errors(),
+                    millis(snapshot.percentile(50)),
+                    millis(snapshot.percentile(90)),
+                    millis(snapshot.percentile(99)),
+                    millis(snapshot.maxNanos),
+                    millis((long) snapshot.meanNanos())
+            });
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
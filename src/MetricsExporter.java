@@ -0,0 +1,131 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Периодическая запись метрик в файлы metrics.prom (текстовый формат Prometheus) и metrics.json.
+// Перцентили считаются за последний интервал записи, а счетчики (count, sum, errors) - за все время работы,
+// поэтому по файлам можно строить графики p50/p99 во времени.
+public class MetricsExporter implements AutoCloseable {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Path directory;
+    private final long intervalSeconds;
+    private final ScheduledExecutorService scheduler;
+
+    // Снимки гистограмм на момент предыдущей записи
+    private final Map<Metrics.Timer, LatencyHistogram.Snapshot> previous = new HashMap<>();
+
+    public MetricsExporter(Path directory, long intervalSeconds) {
+        this.directory = directory;
+        this.intervalSeconds = intervalSeconds;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-exporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::exportQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    // Остановка записи с финальной записью текущих значений
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        exportQuietly();
+    }
+
+    private synchronized void exportQuietly() {
+        try {
+            export();
+        } catch (IOException ex) {
+            System.err.println("Ошибка при записи метрик: " + ex.getMessage());
+        }
+    }
+
+    private void export() throws IOException {
+        Files.createDirectories(directory);
+        List<Metrics.Timer> timers = Metrics.timers();
+
+        StringBuilder prom = new StringBuilder();
+        prom.append("# HELP library_operation_duration_seconds Время выполнения операций с базой данных\n");
+        prom.append("# TYPE library_operation_duration_seconds summary\n");
+        StringBuilder errors = new StringBuilder();
+        errors.append("# HELP library_operation_errors_total Число операций, завершившихся ошибкой\n");
+        errors.append("# TYPE library_operation_errors_total counter\n");
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"timestamp\":").append(System.currentTimeMillis())
+                .append(",\"intervalSeconds\":").append(intervalSeconds)
+                .append(",\"operations\":[");
+
+        boolean first = true;
+        for (Metrics.Timer timer : timers) {
+            LatencyHistogram.Snapshot total = timer.snapshot();
+            LatencyHistogram.Snapshot interval = total.minus(previous.getOrDefault(timer, LatencyHistogram.Snapshot.empty()));
+            previous.put(timer, total);
+            long errorCount = timer.errors();
+
+            String labels = "operation=\"" + escape(timer.operation) + "\",role=\"" + escape(timer.role) + "\"";
+            for (double q : QUANTILES) {
+                prom.append("library_operation_duration_seconds{").append(labels)
+                        .append(",quantile=\"").append(q).append("\"} ")
+                        .append(seconds(interval.percentile(q * 100))).append('\n');
+            }
+            prom.append("library_operation_duration_seconds_sum{").append(labels).append("} ")
+                    .append(seconds(total.sumNanos)).append('\n');
+            prom.append("library_operation_duration_seconds_count{").append(labels).append("} ")
+                    .append(total.count).append('\n');
+            errors.append("library_operation_errors_total{").append(labels).append("} ").append(errorCount).append('\n');
+
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append("{\"operation\":\"").append(escape(timer.operation))
+                    .append("\",\"role\":\"").append(escape(timer.role))
+                    .append("\",\"count\":").append(total.count)
+                    .append(",\"errors\":").append(errorCount)
+                    .append(",\"intervalCount\":").append(interval.count)
+                    .append(",\"p50Ms\":").append(millis(interval.percentile(50)))
+                    .append(",\"p90Ms\":").append(millis(interval.percentile(90)))
+                    .append(",\"p99Ms\":").append(millis(interval.percentile(99)))
+                    .append(",\"meanMs\":").append(millis((long) interval.meanNanos()))
+                    .append(",\"maxMs\":").append(millis(total.maxNanos))
+                    .append('}');
+        }
+        json.append("]}\n");
+
+        write(directory.resolve("metrics.prom"), prom.append(errors).toString());
+        write(directory.resolve("metrics.json"), json.toString());
+    }
+
+    // Запись через временный файл, чтобы читатель никогда не видел файл записанным наполовину
+    private static void write(Path file, String content) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
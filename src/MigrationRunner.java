@@ -0,0 +1,268 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Применение миграций схемы базы данных.
+// Версионные миграции - файлы V<номер>__<описание>.sql из каталога migrations - применяются один раз
+// по возрастанию номера; их контрольная сумма сохраняется в таблице schema_version и проверяется при каждом запуске.
+// Повторяемый скрипт (samples.sql) применяется после них, если он еще не применялся или изменился.
+// Миграция с первой строкой "-- migration: no-transaction" выполняется вне транзакции по одной команде
+// (это нужно для CREATE INDEX CONCURRENTLY), остальные - целиком в одной транзакции.
+public class MigrationRunner {
+    private static final Pattern VERSIONED_NAME = Pattern.compile("V(\\d+)__(.+)\\.sql");
+    private static final String NO_TRANSACTION_MARKER = "-- migration: no-transaction";
+    // Ключ advisory-блокировки, чтобы два клиента не применяли миграции одновременно
+    private static final long LOCK_KEY = 0x4C4942524152594CL;
+    private static final Pattern DOLLAR_TAG = Pattern.compile("\\$[A-Za-z_]*\\$");
+
+    private final Path migrationsDir;
+    private final Path repeatableScript;
+
+    // Файл миграции
+    private static class Migration {
+        final Integer version; // null - повторяемый скрипт
+        final String script;
+        final String sql;
+        final String checksum;
+        final boolean transactional;
+
+        Migration(Integer version, String script, String sql) {
+            this.version = version;
+            this.script = script;
+            this.sql = sql;
+            this.checksum = checksum(sql);
+            this.transactional = !sql.startsWith(NO_TRANSACTION_MARKER);
+        }
+    }
+
+    public MigrationRunner(Path migrationsDir, Path repeatableScript) {
+        this.migrationsDir = migrationsDir;
+        this.repeatableScript = repeatableScript;
+    }
+
+    // Метод для применения всех ожидающих миграций; возвращает имена примененных файлов
+    public List<String> migrate(Connection conn, DatabaseExecutor.OperationContext ctx) throws IOException, SQLException {
+        TreeMap<Integer, Migration> versioned = loadVersioned();
+        Migration repeatable = new Migration(null, repeatableScript.getFileName().toString(), read(repeatableScript));
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(true);
+        try (Statement stmt = ctx.track(conn.createStatement())) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "script VARCHAR(255) PRIMARY KEY, "
+                    + "version INT UNIQUE, "
+                    + "checksum CHAR(64) NOT NULL, "
+                    + "installed_on TIMESTAMP NOT NULL DEFAULT now(), "
+                    + "execution_ms INT NOT NULL)");
+            stmt.execute("SELECT pg_advisory_lock(" + LOCK_KEY + ")");
+        }
+
+        List<String> applied = new ArrayList<>();
+        try {
+            Map<String, String> installed = loadInstalled(conn);
+
+            for (Migration migration : versioned.values()) {
+                String checksum = installed.get(migration.script);
+                if (checksum != null) {
+                    if (!checksum.equals(migration.checksum)) {
+                        throw new SQLException("Миграция " + migration.script + " изменена после применения "
+                                + "(контрольные суммы не совпадают)");
+                    }
+                    continue;
+                }
+                ctx.setStatus("Применяется " + migration.script);
+                apply(conn, migration, ctx, false);
+                applied.add(migration.script);
+            }
+
+            String checksum = installed.get(repeatable.script);
+            if (!repeatable.checksum.equals(checksum)) {
+                ctx.setStatus("Применяется " + repeatable.script);
+                apply(conn, repeatable, ctx, checksum != null);
+                applied.add(repeatable.script);
+            }
+        } finally {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        return applied;
+    }
+
+    // Применение одной миграции и запись о ней в schema_version
+    private void apply(Connection conn, Migration migration, DatabaseExecutor.OperationContext ctx, boolean reapply)
+            throws SQLException {
+        long start = System.currentTimeMillis();
+        if (migration.transactional) {
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = ctx.track(conn.createStatement())) {
+                    stmt.execute(migration.sql);
+                }
+                record(conn, migration, System.currentTimeMillis() - start, reapply);
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw new SQLException("Ошибка в миграции " + migration.script + ": " + ex.getMessage(), ex);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return;
+        }
+
+        // Вне транзакции каждая команда выполняется отдельно (иначе драйвер объединит их в одну транзакцию)
+        try (Statement stmt = ctx.track(conn.createStatement())) {
+            for (String sql : splitStatements(migration.sql)) {
+                stmt.execute(sql);
+            }
+        } catch (SQLException ex) {
+            throw new SQLException("Ошибка в миграции " + migration.script + ": " + ex.getMessage(), ex);
+        }
+        record(conn, migration, System.currentTimeMillis() - start, reapply);
+    }
+
+    private static void record(Connection conn, Migration migration, long millis, boolean reapply) throws SQLException {
+        String sql = reapply
+                ? "UPDATE schema_version SET checksum = ?, installed_on = now(), execution_ms = ? WHERE script = ?"
+                : "INSERT INTO schema_version (checksum, execution_ms, script, version) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, migration.checksum);
+            stmt.setInt(2, (int) millis);
+            stmt.setString(3, migration.script);
+            if (!reapply) {
+                if (migration.version != null) {
+                    stmt.setInt(4, migration.version);
+                } else {
+                    stmt.setNull(4, java.sql.Types.INTEGER);
+                }
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    private static Map<String, String> loadInstalled(Connection conn) throws SQLException {
+        Map<String, String> installed = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT script, checksum FROM schema_version")) {
+            while (rs.next()) {
+                installed.put(rs.getString("script"), rs.getString("checksum"));
+            }
+        }
+        return installed;
+    }
+
+    private TreeMap<Integer, Migration> loadVersioned() throws IOException {
+        TreeMap<Integer, Migration> migrations = new TreeMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(migrationsDir, "*.sql")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Matcher matcher = VERSIONED_NAME.matcher(name);
+                if (!matcher.matches()) {
+                    throw new IOException("Некорректное имя файла миграции: " + name + " (ожидается V<номер>__<описание>.sql)");
+                }
+                int version = Integer.parseInt(matcher.group(1));
+                Migration previous = migrations.put(version, new Migration(version, name, read(file)));
+                if (previous != null) {
+                    throw new IOException("Две миграции с номером " + version + ": " + previous.script + " и " + name);
+                }
+            }
+        }
+        return migrations;
+    }
+
+    // Чтение файла с приведением переводов строк, чтобы контрольная сумма не зависела от ОС
+    private static String read(Path file) throws IOException {
+        return Files.readString(file, StandardCharsets.UTF_8).replace("\r\n", "\n");
+    }
+
+    private static String checksum(String sql) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(sql.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(64);
+            for (byte b : hash) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // Разбиение скрипта на команды по ';' с учетом строк, идентификаторов в кавычках,
+    // тел функций в $$...$$ и комментариев
+    static List<String> splitStatements(String sql) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int i = 0;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '-' && sql.startsWith("--", i)) {
+                int end = sql.indexOf('\n', i);
+                i = end < 0 ? sql.length() : end + 1;
+                current.append('\n');
+                continue;
+            }
+            if (c == '/' && sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? sql.length() : end + 2;
+                current.append(' ');
+                continue;
+            }
+            if (c == '\'' || c == '"') {
+                int end = sql.indexOf(c, i + 1);
+                while (end >= 0 && end + 1 < sql.length() && sql.charAt(end + 1) == c) {
+                    end = sql.indexOf(c, end + 2); // Удвоенная кавычка внутри строки
+                }
+                end = end < 0 ? sql.length() : end + 1;
+                current.append(sql, i, end);
+                i = end;
+                continue;
+            }
+            if (c == '$') {
+                Matcher tag = DOLLAR_TAG.matcher(sql).region(i, sql.length());
+                if (tag.lookingAt()) {
+                    int end = sql.indexOf(tag.group(), tag.end());
+                    end = end < 0 ? sql.length() : end + tag.group().length();
+                    current.append(sql, i, end);
+                    i = end;
+                    continue;
+                }
+            }
+            if (c == ';') {
+                addStatement(statements, current);
+                i++;
+                continue;
+            }
+            current.append(c);
+            i++;
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+        current.setLength(0);
+    }
+}
@@ -0,0 +1,130 @@
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.sql.SQLException;
+import java.util.List;
+
+// Окно быстрого поиска книг по мере ввода.
+// Запрос отправляется только после паузы в наборе текста; предыдущий незавершенный запрос при этом отменяется,
+// так что одновременно выполняется не более одного запроса с ограниченным числом результатов.
+public class QuickSearchDialog extends JDialog {
+    // Пауза в наборе, после которой выполняется поиск
+    private static final int DEBOUNCE_MILLIS = 250;
+    // Минимальная длина запроса
+    private static final int MIN_QUERY_LENGTH = 2;
+
+    // Функция поиска: не более limit книг, подходящих под запрос, в порядке убывания релевантности
+    public interface Searcher {
+        List<Object[]> search(DatabaseExecutor.OperationContext context, String query, int limit) throws SQLException;
+    }
+
+    private final Searcher searcher;
+    private final int limit;
+    private final int timeoutSeconds;
+
+    private final JTextField queryField = new JTextField(30);
+    private final JLabel status = new JLabel(" ");
+    private final DefaultTableModel model = new DefaultTableModel(new Object[]{"ID", "Название", "Автор", "Год"}, 0) {
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+    };
+    private final Timer debounce;
+
+    // Выполняющийся запрос и номер последнего отправленного запроса
+    private DatabaseExecutor.Handle running;
+    private long sequence;
+
+    public QuickSearchDialog(Window owner, Searcher searcher, int limit, int timeoutSeconds) {
+        super(owner, "Быстрый поиск");
+        this.searcher = searcher;
+        this.limit = limit;
+        this.timeoutSeconds = timeoutSeconds;
+        setDefaultCloseOperation(WindowConstants.DISPOSE_ON_CLOSE);
+
+        debounce = new Timer(DEBOUNCE_MILLIS, e -> runSearch());
+        debounce.setRepeats(false);
+
+        // Каждое изменение текста перезапускает таймер
+        queryField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounce.restart();
+            }
+        });
+
+        JPanel top = new JPanel(new BorderLayout(5, 0));
+        top.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+        top.add(new JLabel("Название или автор:"), BorderLayout.WEST);
+        top.add(queryField, BorderLayout.CENTER);
+
+        add(top, BorderLayout.NORTH);
+        add(new JScrollPane(new JTable(model)), BorderLayout.CENTER);
+        add(status, BorderLayout.SOUTH);
+        setSize(600, 400);
+        setLocationRelativeTo(owner);
+    }
+
+    @Override
+    public void dispose() {
+        debounce.stop();
+        cancelRunning();
+        super.dispose();
+    }
+
+    // Запуск поиска после паузы в наборе (в потоке EDT)
+    private void runSearch() {
+        cancelRunning();
+        String query = queryField.getText().trim();
+        long current = ++sequence;
+
+        if (query.length() < MIN_QUERY_LENGTH) {
+            model.setRowCount(0);
+            status.setText(" ");
+            return;
+        }
+
+        long start = System.nanoTime();
+        status.setText("Поиск...");
+        running = DatabaseExecutor.submit(null, null, timeoutSeconds,
+                ctx -> searcher.search(ctx, query, limit),
+                rows -> {
+                    if (current != sequence) {
+                        return; // Пока выполнялся запрос, текст уже изменился
+                    }
+                    running = null;
+                    model.setRowCount(0);
+                    for (Object[] row : rows) {
+                        model.addRow(row);
+                    }
+                    status.setText("Найдено: " + rows.size() + (rows.size() == limit ? "+" : "")
+                            + "   (" + (System.nanoTime() - start) / 1_000_000 + " мс)");
+                },
+                ex -> {
+                    if (current == sequence) {
+                        running = null;
+                        status.setText("Ошибка при поиске: " + ex.getMessage());
+                    }
+                });
+    }
+
+    private void cancelRunning() {
+        if (running != null) {
+            running.cancel();
+            running = null;
+        }
+    }
+}
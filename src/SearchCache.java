@@ -0,0 +1,100 @@
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Кэш результатов поиска книг на стороне клиента.
+// Ключ - поле поиска и значение, записи вытесняются по размеру (LRU) и по времени жизни (TTL).
+// После любого изменения таблицы book этим клиентом кэш нужно сбросить методом invalidate().
+public class SearchCache {
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    // Записи кэша в порядке доступа (первая - давно не использовавшаяся)
+    private final LinkedHashMap<String, Entry> entries;
+
+    // Поколение кэша: увеличивается при каждом сбросе
+    private long generation;
+
+    // Счетчики для статистики
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    private static class Entry {
+        final List<Object[]> rows;
+        final long expiresAt;
+
+        Entry(List<Object[]> rows, long expiresAt) {
+            this.rows = rows;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public SearchCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > SearchCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Метод для получения результата из кэша (null - результата нет или он устарел)
+    public synchronized List<Object[]> get(String field, String value) {
+        String key = key(field, value);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            expirations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.rows;
+    }
+
+    // Текущее поколение кэша; его нужно запомнить перед запросом к базе и передать в put()
+    public synchronized long generation() {
+        return generation;
+    }
+
+    // Метод для сохранения результата. Если кэш сбрасывался после начала запроса,
+    // результат мог устареть, и он не сохраняется.
+    public synchronized void put(String field, String value, List<Object[]> rows, long generation) {
+        if (maxEntries <= 0 || generation != this.generation) {
+            return;
+        }
+        entries.put(key(field, value), new Entry(List.copyOf(rows), System.currentTimeMillis() + ttlMillis));
+    }
+
+    // Метод для сброса кэша после изменения данных
+    public synchronized void invalidate() {
+        generation++;
+        invalidations++;
+        entries.clear();
+    }
+
+    @Override
+    public synchronized String toString() {
+        long total = hits + misses;
+        return "Кэш поиска: записей=" + entries.size() + "/" + maxEntries
+                + ", попаданий=" + hits + ", промахов=" + misses
+                + (total > 0 ? String.format(" (%.1f%%)", hits * 100.0 / total) : "")
+                + ", вытеснено=" + evictions + ", устарело=" + expirations + ", сбросов=" + invalidations;
+    }
+
+    private static String key(String field, String value) {
+        return field + '\u0000' + value;
+    }
+}
@@ -0,0 +1,168 @@
+import org.postgresql.PGStatement;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Кэш подготовленных запросов одного физического соединения пула.
+// Вызов close() у выданного запроса возвращает его в кэш, поэтому повторный prepareStatement/prepareCall
+// с тем же текстом на этом соединении не разбирается и не планируется сервером заново:
+// запросы из кэша сразу переводятся на серверную подготовку (prepareThreshold = 1).
+class StatementCache {
+    private final Connection physical;
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    // Блокировка кэша. Как и в ConnectionPool, используется ReentrantLock, а не synchronized:
+    // виртуальный поток, который подготавливает запрос на сервере, не занимает поток-носитель.
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Свободные запросы в порядке использования (первый - давно не использовавшийся)
+    private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    StatementCache(Connection physical, int maxSize, AtomicLong hits, AtomicLong misses) {
+        this.physical = physical;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+    }
+
+    // Метод для получения подготовленного запроса; owner - соединение пула, которое вернет getConnection()
+    PreparedStatement prepare(String sql, boolean call, Connection owner) throws SQLException {
+        String key = (call ? "call:" : "query:") + sql;
+        PreparedStatement statement;
+        lock.lock();
+        try {
+            // Запрос забирается из кэша на время использования, чтобы один и тот же объект не выдавался дважды
+            statement = statements.remove(key);
+            if (statement != null && !statement.isClosed()) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                statement = call ? physical.prepareCall(sql) : physical.prepareStatement(sql);
+                if (statement.isWrapperFor(PGStatement.class)) {
+                    statement.unwrap(PGStatement.class).setPrepareThreshold(1);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return lease(key, statement, call, owner);
+    }
+
+    // Закрытие всех свободных запросов
+    void close() {
+        lock.lock();
+        try {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Возврат запроса в кэш
+    private void giveBack(String key, PreparedStatement statement) {
+        lock.lock();
+        try {
+            try {
+                ResultSet rs = statement.getResultSet();
+                if (rs != null) {
+                    rs.close();
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                // Настройки, которые мог изменить пользователь, возвращаются к значениям по умолчанию,
+                // чтобы не достаться следующему пользователю того же запроса
+                statement.setQueryTimeout(0);
+                statement.setFetchSize(0);
+                statement.setMaxRows(0);
+                statement.setFetchDirection(ResultSet.FETCH_FORWARD);
+            } catch (SQLException ex) {
+                closeQuietly(statement);
+                return;
+            }
+
+            PreparedStatement previous = statements.put(key, statement);
+            if (previous != null && previous != statement) {
+                closeQuietly(previous);
+            }
+            Iterator<Map.Entry<String, PreparedStatement>> it = statements.entrySet().iterator();
+            while (statements.size() > maxSize && it.hasNext()) {
+                closeQuietly(it.next().getValue());
+                it.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Обертка, которая выдается пользователю на одно использование.
+    // После close() обертка перестает работать, поэтому поздний cancel() от прежнего владельца
+    // не прервет запрос следующего пользователя. Признак released читается из других потоков
+    // (cancel() вызывает сторожевой поток или EDT), поэтому он атомарный.
+    private PreparedStatement lease(String key, PreparedStatement statement, boolean call, Connection owner) {
+        InvocationHandler handler = new InvocationHandler() {
+            private final AtomicBoolean released = new AtomicBoolean();
+
+            @Override
+            public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] args) throws Throwable {
+                switch (method.getName()) {
+                    case "close":
+                        if (released.compareAndSet(false, true)) {
+                            giveBack(key, statement);
+                        }
+                        return null;
+                    case "isClosed":
+                        return released.get() || statement.isClosed();
+                    case "cancel":
+                        if (!released.get()) {
+                            statement.cancel();
+                        }
+                        return null;
+                    case "getConnection":
+                        return owner;
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Cached " + statement;
+                    default:
+                        if (released.get()) {
+                            throw new SQLException("Запрос уже закрыт");
+                        }
+                        try {
+                            return method.invoke(statement, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getCause();
+                        }
+                }
+            }
+        };
+        Class<?> type = call ? CallableStatement.class : PreparedStatement.class;
+        return (PreparedStatement) Proxy.newProxyInstance(StatementCache.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+            // Соединение уже закрыто
+        }
+    }
+}
@@ -0,0 +1,400 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Отложенная запись добавлений и изменений книг (write-behind).
+// Правки складываются в ограниченную очередь в памяти и сразу возвращают управление; фоновый поток
+// забирает их пачками и записывает каждую пачку одной транзакцией (group commit): одна фиксация
+// на много правок вместо отдельного соединения и фиксации на каждую.
+// Несколько изменений одной книги (по id), ожидающих записи, объединяются в одно - побеждает последнее.
+// Когда очередь заполнена, добавление правки ждет свободного места (но не дольше maxWaitMillis).
+// О результате каждой правки сообщает ее обработчик, который вызывается в потоке записи.
+public class WriteBehindQueue implements AutoCloseable {
+    private static final String ADD_SQL = "CALL AddBooks(?, ?, ?)";
+    private static final String UPDATE_SQL = "CALL UpdateBooks(?, ?, ?, ?)";
+
+    // Обработчик завершения правки: error == null - правка записана в базу данных
+    public interface Listener {
+        void onComplete(Exception error);
+    }
+
+    // Правка, ожидающая записи: добавление (id == 0) или изменение книги с указанным id
+    private static class Edit {
+        final int id;
+        String title;
+        String author;
+        int year;
+        // Обработчики всех правок, объединенных в эту
+        final List<Listener> listeners = new ArrayList<>(1);
+        // Обработчики уже вызваны (читается и меняется только потоком записи)
+        boolean completed;
+
+        Edit(int id, String title, String author, int year, Listener listener) {
+            this.id = id;
+            this.title = title;
+            this.author = author;
+            this.year = year;
+            listeners.add(listener);
+        }
+    }
+
+    private final JdbcBookRepository.ConnectionSource source;
+    private final String role;
+    private final int capacity;
+    private final int maxBatch;
+    private final long lingerMillis;
+    private final long maxWaitMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Сигнал для потока записи: появились правки или очередь закрывается
+    private final Condition notEmpty = lock.newCondition();
+    // Сигнал для ожидающих: в очереди освободилось место или пачка записана
+    private final Condition notFull = lock.newCondition();
+    // Добавления в порядке поступления и изменения по id (в порядке первого изменения)
+    private final Deque<Edit> adds = new ArrayDeque<>();
+    private final Map<Integer, Edit> updates = new LinkedHashMap<>();
+    // Пачка, которую сейчас записывает поток записи
+    private boolean writing;
+    private boolean closed;
+    private final Thread writer;
+
+    // Счетчики для статистики
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+
+    // capacity - максимальное число правок в очереди, maxBatch - максимальное число правок в одной транзакции,
+    // lingerMillis - сколько поток записи ждет новых правок, чтобы набрать пачку побольше,
+    // maxWaitMillis - сколько добавление правки ждет места в заполненной очереди
+    public WriteBehindQueue(JdbcBookRepository.ConnectionSource source, String role,
+                            int capacity, int maxBatch, long lingerMillis, long maxWaitMillis) {
+        if (capacity < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Некорректный размер очереди записи: " + capacity + ", " + maxBatch);
+        }
+        this.source = source;
+        this.role = role;
+        this.capacity = capacity;
+        this.maxBatch = maxBatch;
+        this.lingerMillis = lingerMillis;
+        this.maxWaitMillis = maxWaitMillis;
+        this.writer = Thread.ofVirtual().name("write-behind-" + role).start(this::run);
+    }
+
+    // Метод для постановки в очередь добавления книги
+    public void addBook(String title, String author, int year, Listener listener) throws SQLException {
+        enqueue(new Edit(0, title, author, year, listener));
+    }
+
+    // Метод для постановки в очередь изменения книги по id
+    public void updateBook(int id, String title, String author, int year, Listener listener) throws SQLException {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Некорректный id книги: " + id);
+        }
+        enqueue(new Edit(id, title, author, year, listener));
+    }
+
+    private void enqueue(Edit edit) throws SQLException {
+        long deadline = System.currentTimeMillis() + maxWaitMillis;
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new SQLException("Очередь записи закрыта");
+                }
+                // Изменение книги, которая уже ждет записи, объединяется с ним и места не занимает
+                Edit pending = edit.id > 0 ? updates.get(edit.id) : null;
+                if (pending != null) {
+                    pending.title = edit.title;
+                    pending.author = edit.author;
+                    pending.year = edit.year;
+                    pending.listeners.addAll(edit.listeners);
+                    coalesced.incrementAndGet();
+                    break;
+                }
+                if (size() < capacity) {
+                    if (edit.id > 0) {
+                        updates.put(edit.id, edit);
+                    } else {
+                        adds.addLast(edit);
+                    }
+                    notEmpty.signal();
+                    break;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    throw new SQLException("Очередь записи переполнена: превышено время ожидания ("
+                            + maxWaitMillis + " мс)");
+                }
+                waits.incrementAndGet();
+                try {
+                    notFull.await(remaining, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Ожидание места в очереди записи прервано", ex);
+                }
+            }
+            submitted.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Метод для ожидания записи всех правок, поставленных в очередь до вызова
+    // (например, перед удалением книг, чтобы отложенные правки не применились после него)
+    public void flush() throws SQLException {
+        lock.lock();
+        try {
+            notEmpty.signal(); // Не ждем, пока поток записи наберет пачку
+            while (size() > 0 || writing) {
+                try {
+                    notFull.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Ожидание записи очереди прервано", ex);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Метод для закрытия очереди: новые правки не принимаются, оставшиеся записываются в базу данных
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Число правок, ожидающих записи
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int size() {
+        return adds.size() + updates.size();
+    }
+
+    // Цикл потока записи
+    private void run() {
+        while (true) {
+            List<Edit> addBatch = new ArrayList<>();
+            List<Edit> updateBatch = new ArrayList<>();
+            lock.lock();
+            try {
+                while (size() == 0 && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (size() == 0) {
+                    return; // Очередь закрыта и пуста
+                }
+                // Немного ждем, чтобы правки, пришедшие почти одновременно, попали в одну транзакцию
+                long lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+                while (size() < maxBatch && !closed && lingerNanos > 0) {
+                    try {
+                        lingerNanos = notEmpty.awaitNanos(lingerNanos);
+                    } catch (InterruptedException ex) {
+                        break;
+                    }
+                }
+                while (addBatch.size() + updateBatch.size() < maxBatch && !adds.isEmpty()) {
+                    addBatch.add(adds.pollFirst());
+                }
+                Iterator<Edit> it = updates.values().iterator();
+                while (addBatch.size() + updateBatch.size() < maxBatch && it.hasNext()) {
+                    updateBatch.add(it.next());
+                    it.remove();
+                }
+                writing = true;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                write(addBatch, updateBatch);
+            } catch (RuntimeException ex) {
+                // Непредвиденная ошибка не должна остановить поток записи: иначе flush() ждал бы вечно.
+                // Правки пачки, обработчики которых еще не вызваны, считаются неудачными - пользователь узнает
+                // об ошибке так же, как об ошибке базы данных, а полный стек попадает в обработчик исключений потока.
+                List<Edit> pending = new ArrayList<>();
+                for (List<Edit> edits : List.of(addBatch, updateBatch)) {
+                    for (Edit edit : edits) {
+                        if (!edit.completed) {
+                            pending.add(edit);
+                        }
+                    }
+                }
+                failed.addAndGet(pending.size());
+                complete(pending, new SQLException("Ошибка в потоке записи: " + ex, ex));
+                report(ex);
+            } finally {
+                lock.lock();
+                try {
+                    writing = false;
+                    notFull.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    // Запись пачки правок. Если транзакция с пачкой не удалась, правки записываются по одной,
+    // чтобы ошибка досталась только тем правкам, которые ее вызвали.
+    // Непредвиденные исключения (RuntimeException) обрабатываются так же, как ошибки базы данных:
+    // правка считается неудачной, и об этом узнает ее обработчик.
+    private void write(List<Edit> addBatch, List<Edit> updateBatch) {
+        int count = addBatch.size() + updateBatch.size();
+        try {
+            writeTransaction(addBatch, updateBatch);
+            batches.incrementAndGet();
+            written.addAndGet(count);
+            complete(addBatch, null);
+            complete(updateBatch, null);
+            return;
+        } catch (SQLException | RuntimeException ex) {
+            if (count == 1) {
+                failed.incrementAndGet();
+                complete(addBatch, ex);
+                complete(updateBatch, ex);
+                return;
+            }
+        }
+
+        for (Edit edit : addBatch) {
+            writeSingle(List.of(edit), List.of());
+        }
+        for (Edit edit : updateBatch) {
+            writeSingle(List.of(), List.of(edit));
+        }
+    }
+
+    private void writeSingle(List<Edit> addBatch, List<Edit> updateBatch) {
+        try {
+            writeTransaction(addBatch, updateBatch);
+            batches.incrementAndGet();
+            written.incrementAndGet();
+            complete(addBatch, null);
+            complete(updateBatch, null);
+        } catch (SQLException | RuntimeException ex) {
+            failed.incrementAndGet();
+            complete(addBatch, ex);
+            complete(updateBatch, ex);
+        }
+    }
+
+    // Одна транзакция: добавления - одним вызовом AddBooks, изменения - одним вызовом UpdateBooks
+    private void writeTransaction(List<Edit> addBatch, List<Edit> updateBatch) throws SQLException {
+        Metrics.Timer timer = Metrics.timer("WriteBehind", role);
+        long start = System.nanoTime();
+        boolean success = false;
+        try (Connection conn = source.getConnection()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!addBatch.isEmpty()) {
+                    String[] titles = new String[addBatch.size()];
+                    String[] authors = new String[addBatch.size()];
+                    Integer[] years = new Integer[addBatch.size()];
+                    for (int i = 0; i < addBatch.size(); i++) {
+                        Edit edit = addBatch.get(i);
+                        titles[i] = edit.title;
+                        authors[i] = edit.author;
+                        years[i] = edit.year;
+                    }
+                    try (PreparedStatement stmt = conn.prepareStatement(ADD_SQL)) {
+                        stmt.setArray(1, conn.createArrayOf("varchar", titles));
+                        stmt.setArray(2, conn.createArrayOf("varchar", authors));
+                        stmt.setArray(3, conn.createArrayOf("integer", years));
+                        stmt.execute();
+                    }
+                }
+                if (!updateBatch.isEmpty()) {
+                    Integer[] ids = new Integer[updateBatch.size()];
+                    String[] titles = new String[updateBatch.size()];
+                    String[] authors = new String[updateBatch.size()];
+                    Integer[] years = new Integer[updateBatch.size()];
+                    for (int i = 0; i < updateBatch.size(); i++) {
+                        Edit edit = updateBatch.get(i);
+                        ids[i] = edit.id;
+                        titles[i] = edit.title;
+                        authors[i] = edit.author;
+                        years[i] = edit.year;
+                    }
+                    try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL)) {
+                        stmt.setArray(1, conn.createArrayOf("integer", ids));
+                        stmt.setArray(2, conn.createArrayOf("varchar", titles));
+                        stmt.setArray(3, conn.createArrayOf("varchar", authors));
+                        stmt.setArray(4, conn.createArrayOf("integer", years));
+                        stmt.execute();
+                    }
+                }
+                conn.commit();
+                success = true;
+            } catch (SQLException | RuntimeException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            timer.record(start, success);
+        }
+    }
+
+    // Уведомление обработчиков правок; ошибка в обработчике не должна остановить поток записи
+    private static void complete(List<Edit> edits, Exception error) {
+        for (Edit edit : edits) {
+            edit.completed = true;
+            for (Listener listener : edit.listeners) {
+                try {
+                    listener.onComplete(error);
+                } catch (RuntimeException ex) {
+                    report(ex);
+                }
+            }
+        }
+    }
+
+    // Передача непредвиденного исключения обработчику исключений потока записи
+    // (по умолчанию он печатает исключение со стеком вызовов в System.err)
+    private static void report(RuntimeException ex) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, ex);
+    }
+
+    @Override
+    public String toString() {
+        return "Очередь записи " + role + ": ожидают=" + getPendingCount() + ", принято=" + submitted.get()
+                + ", объединено=" + coalesced.get() + ", записано=" + written.get() + ", ошибок=" + failed.get()
+                + ", транзакций=" + batches.get() + ", ожиданий места=" + waits.get();
+    }
+}